@@ -3,81 +3,151 @@ package org.example;
 import java.util.*;
 import java.io.*;
 
-import static org.example.Utils.getInputAndProcess;
+import static org.example.Utils.getMessagesAndProcess;
+import static org.example.Utils.getSegmentedInput;
 
 public class AffineCipherSolver {
 
-    // N-gram files configuration
-    private static final String NGRAM_FILES_DIR = "src/main/resources/"; // Directory containing n-gram frequency files
-    private static final String[] NGRAM_FILES = {
-            "english_monograms.txt",
-            "english_bigrams.txt",
-            "english_trigrams.txt",
-            "english_quadgrams.txt",
-            "english_quintgrams.txt"
-    };
+    private static final String NGRAM_FILES_DIR = "src/main/resources/"; // Directory containing the word list
+    private static final String WORD_FILE = "english_words.txt"; // Word list for the optional rescoring stage
 
     public static void main(String[] args) {
 
-        // Load n-gram frequencies
+        // Load n-gram frequencies of the selected alphabet
         NGramScorer ngramScorer;
         try {
-            ngramScorer = new NGramScorer(NGRAM_FILES_DIR, NGRAM_FILES);
+            ngramScorer = SubstitutionWithKeywordSolver.loadNGramScorer();
         } catch (IOException e) {
             System.err.println("Error loading n-gram frequencies: " + e.getMessage());
             return;
         }
-        String ciphertext = getInputAndProcess();
+        boolean multipleMessages = false;
+        boolean rescore = false;
+        int topResultsLimit = 5;
+        int cascadeOrder = 3;
+        Double cascadeMargin = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--messages" -> multipleMessages = true;
+                case "--rescore" -> rescore = true;
+                case "--top" -> topResultsLimit = Integer.parseInt(args[++i]);
+                case "--cascade-order" -> cascadeOrder = Integer.parseInt(args[++i]);
+                case "--cascade-margin" -> cascadeMargin = Double.parseDouble(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+        if (cascadeMargin != null) {
+            ngramScorer.setCascade(cascadeOrder, cascadeMargin);
+        }
+
+        // Load the word list only when rescoring is requested
+        WordSegmenter wordSegmenter = null;
+        if (rescore) {
+            try {
+                wordSegmenter = new WordSegmenter(NGRAM_FILES_DIR + WORD_FILE);
+            } catch (IOException e) {
+                System.err.println("Error loading word list: " + e.getMessage());
+                return;
+            }
+        }
+
+        // Several messages under the same keys are solved as one corpus
+        SegmentedText ciphertext = multipleMessages
+                ? SegmentedText.of(getMessagesAndProcess(), ngramScorer.alphabet())
+                : getSegmentedInput();
+
+        List<Result> resultsList = solve(ciphertext, ngramScorer, topResultsLimit);
+        if (ngramScorer.isCascadeEnabled()) {
+            System.out.println(ngramScorer.getCascadeStats());
+        }
+        if (wordSegmenter != null) {
+            resultsList = wordSegmenter.rescore(resultsList);
+        }
+        printResults(resultsList);
+    }
+
+    // Try the most likely letter mappings and return the best decryptions, highest score first
+    public static List<Result> solve(String ciphertext, NGramScorer ngramScorer, int topResultsLimit) {
+        return solve(SegmentedText.of(ciphertext, ngramScorer.alphabet()), ngramScorer, topResultsLimit);
+    }
+
+    // Solve several messages encrypted under the same keys as one corpus; the modulus is the size of its alphabet
+    public static List<Result> solve(SegmentedText ciphertext, NGramScorer ngramScorer, int topResultsLimit) {
+        return solve(ciphertext, ngramScorer, topResultsLimit, SearchMonitor.NONE);
+    }
+
+    // As above, telling the monitor about every key pair tried and every new best decryption
+    public static List<Result> solve(SegmentedText ciphertext, NGramScorer ngramScorer, int topResultsLimit,
+                                     SearchMonitor monitor) {
+        byte[] plain = new byte[ciphertext.length()];
+        NGramHistogram histogram = ngramScorer.histogram(ciphertext);
+        NGramScorer.Cascade cascade = ngramScorer.cascade(topResultsLimit);
+        Alphabet alphabet = ciphertext.alphabet;
+        int m = alphabet.size();
 
         // Step 2: Perform frequency analysis on the ciphertext
-        Map<Character, Integer> freqMap = frequencyAnalysis(ciphertext);
+        int[] counts = frequencyAnalysis(ciphertext);
 
         // Step 3: Estimate possible mappings
         char[] commonPlainLetters = {'E', 'T', 'A', 'O', 'I', 'N', 'S', 'H', 'R', 'D'};
 
-        // Get the most frequent letters in the ciphertext
-        List<Character> commonCipherLetters = getMostFrequentLetters(freqMap);
+        // Get the symbols occurring in the ciphertext, most frequent first
+        int[] commonCipherLetters = getMostFrequentLetters(counts);
 
         // Step 4 & 5: Try different pairs of mappings to solve for A and B
         PriorityQueue<Result> topResults = new PriorityQueue<>(Comparator.comparingDouble(r -> r.score));
+        double bestScore = Double.NEGATIVE_INFINITY;
+        long keysTried = 0;
 
         for (int i = 0; i < commonPlainLetters.length; i++) {
             for (int j = i + 1; j < commonPlainLetters.length; j++) {
                 char p1 = commonPlainLetters[i];
                 char p2 = commonPlainLetters[j];
 
-                for (int k = 0; k < commonCipherLetters.size(); k++) {
-                    for (int l = k + 1; l < commonCipherLetters.size(); l++) {
-                        char c1 = commonCipherLetters.get(k);
-                        char c2 = commonCipherLetters.get(l);
-
-                        // Convert letters to numbers (A=0, B=1, ..., Z=25)
-                        int p1Val = p1 - 'A';
-                        int p2Val = p2 - 'A';
-                        int c1Val = c1 - 'A';
-                        int c2Val = c2 - 'A';
+                for (int k = 0; k < commonCipherLetters.length; k++) {
+                    for (int l = k + 1; l < commonCipherLetters.length; l++) {
+                        int c1Val = commonCipherLetters[k];
+                        int c2Val = commonCipherLetters[l];
+                        char c1 = alphabet.symbol(c1Val);
+                        char c2 = alphabet.symbol(c2Val);
+
+                        // Convert letters to their codes (A=0, B=1, ...); skip plain letters the alphabet lacks
+                        int p1Val = alphabet.code(p1);
+                        int p2Val = alphabet.code(p2);
+                        if (p1Val < 0 || p2Val < 0) {
+                            continue;
+                        }
 
                         // Solve for A and B
-                        int[] possibleKeys = solveForKeys(p1Val, p2Val, c1Val, c2Val);
+                        int[] possibleKeys = solveForKeys(p1Val, p2Val, c1Val, c2Val, m);
                         if (possibleKeys != null) {
                             int A = possibleKeys[0];
                             int B = possibleKeys[1];
 
-                            // Decrypt the ciphertext using the found keys
-                            String plaintext = decryptAffine(ciphertext, A, B);
-
-                            // Score the decrypted text
-                            double score = ngramScorer.score(plaintext);
-
-                            // Store the result
-                            Result result = new Result(A, B, plaintext, p1, c1, p2, c2, score);
+                            // Score the decryption from the ciphertext n-gram histogram; no n-gram spans two messages
+                            double score = cascade.score(histogram, affineMapping(A, B, m));
+                            keysTried++;
 
-                            // Keep only top 5 results
-                            if (topResults.size() < 5) {
-                                topResults.add(result);
+                            // Keep only the top results; the cascade's cheap stage drops a candidate with -Infinity
+                            if (score == Double.NEGATIVE_INFINITY) {
+                                continue;
+                            } else if (topResults.size() < topResultsLimit) {
+                                decryptAffine(ciphertext.codes, A, B, m, plain);
+                                topResults.add(new Result(A, B, ciphertext.decode(plain), p1, c1, p2, c2, score));
                             } else if (score > topResults.peek().score) {
                                 topResults.poll();
-                                topResults.add(result);
+                                decryptAffine(ciphertext.codes, A, B, m, plain);
+                                topResults.add(new Result(A, B, ciphertext.decode(plain), p1, c1, p2, c2, score));
+                            } else {
+                                continue;
+                            }
+                            if (score > bestScore) {
+                                bestScore = score;
+                                String decryption = ciphertext.decode(plain);
+                                monitor.improved(score, () -> decryption);
                             }
                         }
                     }
@@ -85,11 +155,17 @@ public class AffineCipherSolver {
             }
         }
 
-        if (!topResults.isEmpty()) {
-            // Output top 5 results
-            System.out.println("\nTop 5 Most Probable Decryptions:");
-            List<Result> resultsList = new ArrayList<>(topResults);
-            resultsList.sort((r1, r2) -> Double.compare(r2.score, r1.score)); // Sort in descending order
+        monitor.candidates(keysTried);
+        List<Result> resultsList = new ArrayList<>(topResults);
+        resultsList.sort((r1, r2) -> Double.compare(r2.score, r1.score)); // Sort in descending order
+        return resultsList;
+    }
+
+    // Print the results returned by solve
+    public static void printResults(List<Result> resultsList) {
+        if (!resultsList.isEmpty()) {
+            // Output top results
+            System.out.println("\nTop " + resultsList.size() + " Most Probable Decryptions:");
 
             int count = 1;
             for (Result result : resultsList) {
@@ -97,6 +173,10 @@ public class AffineCipherSolver {
                 System.out.println("Score: " + result.score);
                 System.out.println("Mapping: " + result.p1 + "->" + result.c1 + ", " + result.p2 + "->" + result.c2);
                 System.out.println("Keys: A = " + result.A + ", B = " + result.B);
+                if (result.segmentation != null) {
+                    System.out.println("Word Score: " + result.segmentation.logProb + " | Combined Score: " + result.combinedScore);
+                    System.out.println("Words: " + result.segmentation);
+                }
                 System.out.println("Decrypted Text:");
                 System.out.println(formatOutput(result.plaintext));
                 count++;
@@ -104,15 +184,17 @@ public class AffineCipherSolver {
         } else {
             System.out.println("No solution found with the estimated mappings.");
         }
-
     }
 
     // Class to store results
-    private static class Result {
+    public static class Result implements WordSegmenter.Candidate {
         int A, B;
         String plaintext;
         char p1, c1, p2, c2;
         double score;
+        // Only set when the results have been rescored
+        WordSegmenter.Segmentation segmentation;
+        double combinedScore = Double.NaN;
 
         Result(int A, int B, String plaintext, char p1, char c1, char p2, char c2, double score) {
             this.A = A;
@@ -124,30 +206,64 @@ public class AffineCipherSolver {
             this.c2 = c2;
             this.score = score;
         }
-    }
 
-    // Perform frequency analysis on the ciphertext
-    private static Map<Character, Integer> frequencyAnalysis(String text) {
-        Map<Character, Integer> freqMap = new HashMap<>();
-        for (char ch : text.toCharArray()) {
-            freqMap.put(ch, freqMap.getOrDefault(ch, 0) + 1);
+        @Override
+        public String text() {
+            return plaintext;
+        }
+
+        @Override
+        public double ngramScore() {
+            return score;
+        }
+
+        @Override
+        public void setRescore(WordSegmenter.Segmentation segmentation, double combinedScore) {
+            this.segmentation = segmentation;
+            this.combinedScore = combinedScore;
+        }
+
+        @Override
+        public double combinedScore() {
+            return combinedScore;
         }
-        return freqMap;
     }
 
-    // Get the most frequent letters in the ciphertext
-    private static List<Character> getMostFrequentLetters(Map<Character, Integer> freqMap) {
-        List<Character> letters = new ArrayList<>(freqMap.keySet());
-        letters.sort((a, b) -> freqMap.get(b) - freqMap.get(a));
-        return letters;
+    // Perform frequency analysis on the ciphertext: the count of every symbol code
+    private static int[] frequencyAnalysis(SegmentedText text) {
+        int[] counts = new int[text.alphabet.size()];
+        for (int i = 0; i < text.length(); i++) {
+            counts[text.codes[i]]++;
+        }
+        return counts;
     }
 
-    // Solve for keys A and B given two plaintext-ciphertext letter pairs
-    private static int[] solveForKeys(int p1, int p2, int c1, int c2) {
-        int m = 26; // Size of the alphabet
+    // Get the codes of the symbols occurring in the ciphertext, most frequent first (ties by code)
+    private static int[] getMostFrequentLetters(int[] counts) {
+        int[] letters = new int[counts.length];
+        int n = 0;
+        for (int c = 0; c < counts.length; c++) {
+            if (counts[c] > 0) {
+                letters[n++] = c;
+            }
+        }
+        // Insertion sort keeps equal counts in code order
+        for (int i = 1; i < n; i++) {
+            int letter = letters[i];
+            int j = i;
+            while (j > 0 && counts[letters[j - 1]] < counts[letter]) {
+                letters[j] = letters[j - 1];
+                j--;
+            }
+            letters[j] = letter;
+        }
+        return Arrays.copyOf(letters, n);
+    }
 
+    // Solve for keys A and B given two plaintext-ciphertext letter pairs, modulo the alphabet size m
+    private static int[] solveForKeys(int p1, int p2, int c1, int c2, int m) {
         // Compute differences to eliminate B:
-        // (c1 - c2) mod 26 = A * (p1 - p2) mod 26
+        // (c1 - c2) mod m = A * (p1 - p2) mod m
 
         int pDiff = (p1 - p2 + m) % m;
         int cDiff = (c1 - c2 + m) % m;
@@ -170,21 +286,57 @@ public class AffineCipherSolver {
         return new int[]{A, B};
     }
 
+    // Encrypt the plaintext using the affine cipher formula E(x) = (A * x + B) mod 26
+    public static String encryptAffine(String plaintext, int A, int B) {
+        return encryptAffine(plaintext, A, B, Alphabet.LATIN_26);
+    }
+
+    // E(x) = (A * x + B) mod m over the codes of the alphabet, m being its size
+    public static String encryptAffine(String plaintext, int A, int B, Alphabet alphabet) {
+        int m = alphabet.size();
+        if (gcd(A, m) != 1) {
+            throw new IllegalArgumentException("A must be coprime with " + m + ".");
+        }
+
+        StringBuilder ciphertext = new StringBuilder();
+        for (byte p : alphabet.encode(plaintext)) {
+            int c = ((A * p + B) % m + m) % m;
+            ciphertext.append(alphabet.symbol(c));
+        }
+        return ciphertext.toString();
+    }
+
     // Decrypt the ciphertext using the affine cipher formula
-    private static String decryptAffine(String ciphertext, int A, int B) {
-        int m = 26;
+    public static String decryptAffine(String ciphertext, int A, int B) {
+        return decryptAffine(ciphertext, A, B, Alphabet.LATIN_26);
+    }
+
+    public static String decryptAffine(String ciphertext, int A, int B, Alphabet alphabet) {
+        byte[] codes = alphabet.encode(ciphertext);
+        decryptAffine(codes, A, B, alphabet.size(), codes);
+        return alphabet.decode(codes, 0, codes.length);
+    }
+
+    // Decrypt letter codes into the plaintext buffer using the affine cipher formula
+    private static void decryptAffine(byte[] ciphertext, int A, int B, int m, byte[] plaintext) {
+        byte[] table = affineMapping(A, B, m);
+        for (int i = 0; i < ciphertext.length; i++) {
+            plaintext[i] = table[ciphertext[i]];
+        }
+    }
+
+    // Plaintext code of every ciphertext code, so decryption is one table lookup per letter
+    private static byte[] affineMapping(int A, int B, int m) {
         int A_inv = modInverse(A, m);
         if (A_inv == -1) {
             throw new IllegalArgumentException("Multiplicative inverse of A does not exist.");
         }
 
-        StringBuilder plaintext = new StringBuilder();
-        for (char ch : ciphertext.toCharArray()) {
-            int c = ch - 'A';
-            int p = (A_inv * (c - B + m)) % m;
-            plaintext.append((char) (p + 'A'));
+        byte[] table = new byte[m];
+        for (int c = 0; c < m; c++) {
+            table[c] = (byte) ((A_inv * (c - B + m)) % m);
         }
-        return plaintext.toString();
+        return table;
     }
 
     // Compute the modular inverse of a modulo m
@@ -213,7 +365,7 @@ public class AffineCipherSolver {
     }
 
     // Compute the greatest common divisor
-    private static int gcd(int a, int b) {
+    static int gcd(int a, int b) {
         return b == 0 ? a : gcd(b, a % b);
     }
 
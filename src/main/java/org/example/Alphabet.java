@@ -0,0 +1,176 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * The symbols of a cipher alphabet with codes 0 ... size - 1. An alphabet is compiled once
+ * into lookup tables, so normalising a text, rendering codes and indexing n-gram tables stay
+ * array lookups whatever the alphabet. Lower-case letters get the code of their upper-case
+ * symbol, and an alphabet may fold further characters onto a symbol, like J onto I for
+ * Playfair or the Czech letters with diacritics onto their base letters.
+ */
+public final class Alphabet {
+
+    // System property naming the alphabet of the ciphertexts and models, set by the launcher's --alphabet
+    static final String PROPERTY = "ksb.alphabet";
+    // A set of codes fits the bits of a long
+    static final int MAX_SIZE = 64;
+
+    public static final Alphabet LATIN_26 = new Alphabet("latin26", "ABCDEFGHIJKLMNOPQRSTUVWXYZ", "");
+    // Playfair's alphabet, J is read as I
+    public static final Alphabet LATIN_25 = new Alphabet("latin25", "ABCDEFGHIKLMNOPQRSTUVWXYZ", "JI");
+    public static final Alphabet ALNUM_36 = new Alphabet("alnum36", "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789", "");
+    public static final Alphabet CZECH_41 = new Alphabet("czech", "AÁBCČDĎEÉĚFGHIÍJKLMNŇOÓPQRŘSŠTŤUÚŮVWXYÝZŽ", "");
+    // Czech text on A-Z, the letters with diacritics folded onto their base letters
+    public static final Alphabet CZECH_26 = new Alphabet("czech26", "ABCDEFGHIJKLMNOPQRSTUVWXYZ",
+            "ÁAČCĎDÉEĚEÍIŇNÓOŘRŠSŤTÚUŮUÝYŽZ");
+
+    private static final Alphabet[] ALPHABETS = {LATIN_26, LATIN_25, ALNUM_36, CZECH_41, CZECH_26};
+
+    private final String name;
+    private final char[] symbols;
+    // Code of every char up to the highest one the alphabet reads, -1 for the others
+    private final byte[] codes;
+    // Code of every byte value, or null if the alphabet reads characters beyond ASCII
+    private final byte[] byteCodes;
+
+    /**
+     * @param symbols the symbols in code order, upper case where there is a case
+     * @param folds   pairs of a further character and the symbol it is read as
+     */
+    private Alphabet(String name, String symbols, String folds) {
+        if (symbols.length() > MAX_SIZE) {
+            throw new IllegalArgumentException("Alphabets have at most " + MAX_SIZE + " symbols");
+        }
+        this.name = name;
+        this.symbols = symbols.toCharArray();
+
+        int maxChar = 127;
+        for (int i = 0; i < symbols.length(); i++) {
+            maxChar = Math.max(maxChar, Math.max(symbols.charAt(i), Character.toLowerCase(symbols.charAt(i))));
+        }
+        for (int i = 0; i < folds.length(); i += 2) {
+            maxChar = Math.max(maxChar, Math.max(folds.charAt(i), Character.toLowerCase(folds.charAt(i))));
+        }
+        codes = new byte[maxChar + 1];
+        Arrays.fill(codes, (byte) -1);
+        for (int code = 0; code < symbols.length(); code++) {
+            char symbol = symbols.charAt(code);
+            codes[symbol] = (byte) code;
+            codes[Character.toLowerCase(symbol)] = (byte) code;
+        }
+        for (int i = 0; i < folds.length(); i += 2) {
+            byte code = codes[folds.charAt(i + 1)];
+            codes[folds.charAt(i)] = code;
+            codes[Character.toLowerCase(folds.charAt(i))] = code;
+        }
+        byteCodes = maxChar < 128 ? Arrays.copyOf(codes, 256) : null;
+        if (byteCodes != null) {
+            Arrays.fill(byteCodes, 128, 256, (byte) -1);
+        }
+    }
+
+    public static Alphabet forName(String name) {
+        StringJoiner names = new StringJoiner(", ");
+        for (Alphabet alphabet : ALPHABETS) {
+            if (alphabet.name.equalsIgnoreCase(name)) {
+                return alphabet;
+            }
+            names.add(alphabet.name);
+        }
+        throw new IllegalArgumentException("Unknown alphabet " + name + ", expected one of " + names);
+    }
+
+    // The alphabet named by the ksb.alphabet property, A-Z by default
+    public static Alphabet selected() {
+        String name = System.getProperty(PROPERTY);
+        return name == null ? LATIN_26 : forName(name);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    public char symbol(int code) {
+        return symbols[code];
+    }
+
+    // The symbols in code order
+    public char[] symbols() {
+        return symbols.clone();
+    }
+
+    // Code of a character, -1 if the alphabet does not read it
+    public int code(int ch) {
+        return ch < codes.length ? codes[ch] : -1;
+    }
+
+    // Code of every byte value for the byte-level readers, null if the alphabet is not ASCII-only
+    byte[] byteCodes() {
+        return byteCodes;
+    }
+
+    public boolean isAscii() {
+        return byteCodes != null;
+    }
+
+    // Whether codes of the two alphabets stand for the same symbols, e.g. A-Z with and without folding
+    public boolean sameCodes(Alphabet other) {
+        return Arrays.equals(symbols, other.symbols);
+    }
+
+    // Number of n-grams of the given length, i.e. the size of a dense table indexed by base-size values
+    public int power(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= symbols.length;
+            if (result > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException(exponent + "-grams of " + name + " do not fit a dense table");
+            }
+        }
+        return (int) result;
+    }
+
+    // Codes of the characters the alphabet reads, anything else skipped
+    public byte[] encode(CharSequence text) {
+        byte[] encoded = new byte[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int code = code(text.charAt(i));
+            if (code >= 0) {
+                encoded[length++] = (byte) code;
+            }
+        }
+        return Arrays.copyOf(encoded, length);
+    }
+
+    // The symbols of a text, upper case, with anything the alphabet does not read dropped
+    public String normalise(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            int code = code(text.charAt(i));
+            if (code >= 0) {
+                sb.append(symbols[code]);
+            }
+        }
+        return sb.toString();
+    }
+
+    public String decode(byte[] text, int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = from; i < to; i++) {
+            chars[i - from] = symbols[text[i]];
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
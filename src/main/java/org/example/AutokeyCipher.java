@@ -0,0 +1,48 @@
+package org.example;
+
+public class AutokeyCipher {
+
+    // Encrypt with the primer followed by the plaintext itself as the key
+    public static String encrypt(String plaintext, String primer) {
+        return encrypt(plaintext, primer, Alphabet.LATIN_26);
+    }
+
+    public static String encrypt(String plaintext, String primer, Alphabet alphabet) {
+        byte[] text = alphabet.encode(plaintext);
+        byte[] key = primerCodes(primer, alphabet);
+
+        int m = alphabet.size();
+        byte[] result = new byte[text.length];
+        for (int i = 0; i < text.length; i++) {
+            int shift = i < key.length ? key[i] : text[i - key.length];
+            result[i] = (byte) ((text[i] + shift) % m);
+        }
+        return alphabet.decode(result, 0, result.length);
+    }
+
+    // Decrypt with the primer; every recovered letter becomes the key a primer length later
+    public static String decrypt(String ciphertext, String primer) {
+        return decrypt(ciphertext, primer, Alphabet.LATIN_26);
+    }
+
+    public static String decrypt(String ciphertext, String primer, Alphabet alphabet) {
+        byte[] text = alphabet.encode(ciphertext);
+        byte[] key = primerCodes(primer, alphabet);
+
+        int m = alphabet.size();
+        byte[] result = new byte[text.length];
+        for (int i = 0; i < text.length; i++) {
+            int shift = i < key.length ? key[i] : result[i - key.length];
+            result[i] = (byte) ((text[i] - shift + m) % m);
+        }
+        return alphabet.decode(result, 0, result.length);
+    }
+
+    private static byte[] primerCodes(String primer, Alphabet alphabet) {
+        byte[] key = alphabet.encode(primer);
+        if (key.length == 0) {
+            throw new IllegalArgumentException("Primer must contain at least one letter.");
+        }
+        return key;
+    }
+}
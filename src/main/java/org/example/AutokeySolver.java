@@ -0,0 +1,358 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.example.Utils.getMessagesAndProcess;
+import static org.example.Utils.getSegmentedInput;
+
+/**
+ * Solves autokey Vigenère, which has no period for Kasiski or Friedman to find, and
+ * running-key Vigenère with a known key text.
+ *
+ * <p>Autokey: with a primer of length L, plaintext letter i is decrypted with primer letter
+ * i for i &lt; L and with plaintext letter i - L after that. The letters at positions r, r + L,
+ * r + 2L, ... therefore form a chain that depends only on primer letter r: each is the
+ * ciphertext's alternating sum plus or minus that primer letter. Changing one primer letter
+ * re-derives one chain, and only the n-grams containing a letter of that chain are rescored.
+ * Primer lengths are searched in parallel, each by coordinate ascent with random restarts.
+ */
+public class AutokeySolver {
+
+    /**
+     * Best key found for one primer length or key offset.
+     */
+    public static class Result {
+        public final String key;
+        public final double score;
+        public final String decryption;
+
+        Result(String key, double score, String decryption) {
+            this.key = key;
+            this.score = score;
+            this.decryption = decryption;
+        }
+    }
+
+    private final NGramScorer ngramScorer;
+    private int maxPrimerLength = 12;
+    private int restarts = 20;
+    private long seed = System.nanoTime();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private SearchMonitor monitor = SearchMonitor.NONE;
+
+    public AutokeySolver(NGramScorer ngramScorer) {
+        this.ngramScorer = ngramScorer;
+    }
+
+    public void setMaxPrimerLength(int maxPrimerLength) {
+        this.maxPrimerLength = maxPrimerLength;
+    }
+
+    public void setRestarts(int restarts) {
+        if (restarts < 1) {
+            throw new IllegalArgumentException("Restarts must be at least 1.");
+        }
+        this.restarts = restarts;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Told about the primer letters tried and the best primer of every restart
+    public void setMonitor(SearchMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    public List<Result> solve(String ciphertext) {
+        return solve(SegmentedText.of(ciphertext, ngramScorer.alphabet()));
+    }
+
+    /**
+     * Sweeps primer lengths 1 to maxPrimerLength in parallel. Several messages share the
+     * primer; the key restarts with every message.
+     *
+     * @return the best primer of every length, highest score first
+     */
+    public List<Result> solve(SegmentedText ciphertext) {
+        ngramScorer.checkAlphabet(ciphertext);
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (int length = 1; length <= maxPrimerLength; length++) {
+            int primerLength = length;
+            tasks.add(() -> new PrimerSearch(ciphertext, primerLength).run(new Random(seed + primerLength)));
+        }
+
+        List<Result> results = runAll(tasks);
+        results.sort(Comparator.comparingDouble(r -> -r.score));
+        return results;
+    }
+
+    /**
+     * Tries every offset of the key text as the start of a running key; messages are taken
+     * as consecutive parts of the key. Offsets are split between the threads.
+     *
+     * @return the best offsets, highest score first
+     */
+    public List<Result> solveRunningKey(SegmentedText ciphertext, String keyText, int topResultsLimit) {
+        ngramScorer.checkAlphabet(ciphertext);
+        if (ciphertext.length() == 0) {
+            throw new IllegalArgumentException("Ciphertext contains no letters.");
+        }
+        byte[] key = SegmentedText.of(keyText, ciphertext.alphabet).codes;
+        int offsets = key.length - ciphertext.length() + 1;
+        if (offsets < 1) {
+            throw new IllegalArgumentException("Key text is shorter than the ciphertext.");
+        }
+
+        int slices = Math.min(threads, offsets);
+        List<Callable<List<Result>>> tasks = new ArrayList<>();
+        for (int t = 0; t < slices; t++) {
+            int from = (int) ((long) offsets * t / slices);
+            int to = (int) ((long) offsets * (t + 1) / slices);
+            tasks.add(() -> runningKeyRange(ciphertext, key, from, to, topResultsLimit));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (List<Result> slice : runAll(tasks)) {
+            results.addAll(slice);
+        }
+        results.sort(Comparator.comparingDouble(r -> -r.score));
+        return new ArrayList<>(results.subList(0, Math.min(topResultsLimit, results.size())));
+    }
+
+    private List<Result> runningKeyRange(SegmentedText ciphertext, byte[] key, int from, int to, int topResultsLimit) {
+        byte[] plain = new byte[ciphertext.length()];
+        PriorityQueue<Result> top = new PriorityQueue<>(Comparator.comparingDouble(r -> r.score));
+        NGramScorer.Cascade cascade = ngramScorer.cascade(topResultsLimit);
+        int radix = ciphertext.alphabet.size();
+        for (int offset = from; offset < to; offset++) {
+            for (int i = 0; i < plain.length; i++) {
+                int c = ciphertext.codes[i] - key[offset + i];
+                plain[i] = (byte) (c < 0 ? c + radix : c);
+            }
+            double score = cascade.score(plain, ciphertext.offsets);
+            if (score == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            if (top.size() < topResultsLimit || score > top.peek().score) {
+                String keyPart = ciphertext.alphabet.decode(key, offset, Math.min(offset + 20, offset + plain.length));
+                top.add(new Result("offset " + offset + " (" + keyPart + "...)", score, ciphertext.decode(plain)));
+                if (top.size() > topResultsLimit) {
+                    top.poll();
+                }
+            }
+        }
+        return new ArrayList<>(top);
+    }
+
+    private <T> List<T> runAll(List<Callable<T>> tasks) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        try {
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Search over the primer of one length.
+     */
+    private class PrimerSearch {
+        final SegmentedText ciphertext;
+        final int primerLength;
+        final int radix;
+        // Plaintext letter i is (base[i] + primer letter) or (base[i] - primer letter), mod the alphabet size
+        final byte[] base;
+        final boolean[] adds;
+        // Positions of every chain and the n-gram windows containing them, per n-gram length
+        final int[][] chains;
+        final int[][][] windows;
+        final byte[] plain;
+
+        PrimerSearch(SegmentedText ciphertext, int primerLength) {
+            this.ciphertext = ciphertext;
+            this.primerLength = primerLength;
+            this.radix = ciphertext.alphabet.size();
+            int n = ciphertext.length();
+            base = new byte[n];
+            adds = new boolean[n];
+            plain = new byte[n];
+
+            List<List<Integer>> chainPositions = new ArrayList<>();
+            for (int r = 0; r < primerLength; r++) {
+                chainPositions.add(new ArrayList<>());
+            }
+            for (int s = 0; s < ciphertext.segmentCount(); s++) {
+                int start = ciphertext.start(s);
+                for (int i = start; i < ciphertext.end(s); i++) {
+                    int t = i - start;
+                    if (t < primerLength) {
+                        base[i] = ciphertext.codes[i]; // p = c - primer letter
+                        adds[i] = false;
+                    } else {
+                        int b = ciphertext.codes[i] - base[i - primerLength]; // p = c - p[i - L]
+                        base[i] = (byte) (b < 0 ? b + radix : b);
+                        adds[i] = !adds[i - primerLength];
+                    }
+                    chainPositions.get(t % primerLength).add(i);
+                }
+            }
+
+            chains = new int[primerLength][];
+            windows = new int[primerLength][][];
+            for (int r = 0; r < primerLength; r++) {
+                chains[r] = chainPositions.get(r).stream().mapToInt(Integer::intValue).toArray();
+                windows[r] = ngramScorer.windowsContaining(chains[r], ciphertext.offsets);
+            }
+        }
+
+        private void setChain(int r, int primerLetter) {
+            for (int position : chains[r]) {
+                int p = base[position] + (adds[position] ? primerLetter : radix - primerLetter);
+                plain[position] = (byte) (p >= radix ? p - radix : p);
+            }
+        }
+
+        Result run(Random random) {
+            byte[] bestPrimer = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            byte[] primer = new byte[primerLength];
+
+            for (int restart = 0; restart < restarts; restart++) {
+                long lettersTried = 0;
+                for (int r = 0; r < primerLength; r++) {
+                    primer[r] = (byte) random.nextInt(radix);
+                    setChain(r, primer[r]);
+                }
+
+                // Coordinate ascent: best letter for one chain at a time until nothing improves
+                boolean improved = true;
+                while (improved) {
+                    improved = false;
+                    for (int r = 0; r < primerLength; r++) {
+                        double current = ngramScorer.scoreWindows(plain, windows[r]);
+                        int bestLetter = primer[r];
+                        double bestWindows = current;
+                        for (int letter = 0; letter < radix; letter++) {
+                            if (letter == primer[r]) {
+                                continue;
+                            }
+                            setChain(r, letter);
+                            double score = ngramScorer.scoreWindows(plain, windows[r]);
+                            lettersTried++;
+                            if (score > bestWindows) {
+                                bestWindows = score;
+                                bestLetter = letter;
+                            }
+                        }
+                        setChain(r, bestLetter);
+                        if (bestLetter != primer[r]) {
+                            primer[r] = (byte) bestLetter;
+                            improved = true;
+                        }
+                    }
+                }
+
+                double score = ngramScorer.score(plain, ciphertext.offsets);
+                monitor.candidates(lettersTried);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestPrimer = primer.clone();
+                    String decryption = ciphertext.decode(plain);
+                    monitor.improved(score, () -> decryption);
+                }
+            }
+
+            for (int r = 0; r < primerLength; r++) {
+                setChain(r, bestPrimer[r]);
+            }
+            return new Result(ciphertext.alphabet.decode(bestPrimer, 0, primerLength), bestScore, ciphertext.decode(plain));
+        }
+    }
+
+    public static void main(String[] args) {
+        boolean multipleMessages = false;
+        String runningKeyFile = null;
+        int topResultsLimit = 5;
+        int cascadeOrder = 3;
+        Double cascadeMargin = null;
+        AutokeySolver solver;
+        try {
+            solver = new AutokeySolver(SubstitutionWithKeywordSolver.loadNGramScorer());
+        } catch (IOException e) {
+            System.err.println("Error loading N-gram scorer: " + e.getMessage());
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--messages" -> multipleMessages = true;
+                case "--max-primer-length" -> solver.setMaxPrimerLength(Integer.parseInt(args[++i]));
+                case "--restarts" -> {
+                    int restarts = Integer.parseInt(args[++i]);
+                    if (restarts < 1) {
+                        System.err.println("--restarts must be at least 1");
+                        return;
+                    }
+                    solver.setRestarts(restarts);
+                }
+                case "--seed" -> solver.setSeed(Long.parseLong(args[++i]));
+                case "--threads" -> solver.threads = Integer.parseInt(args[++i]);
+                case "--running-key" -> runningKeyFile = args[++i];
+                case "--top" -> topResultsLimit = Integer.parseInt(args[++i]);
+                case "--cascade-order" -> cascadeOrder = Integer.parseInt(args[++i]);
+                case "--cascade-margin" -> cascadeMargin = Double.parseDouble(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        SegmentedText ciphertext = multipleMessages
+                ? SegmentedText.of(getMessagesAndProcess(), solver.ngramScorer.alphabet())
+                : getSegmentedInput();
+
+        List<Result> results;
+        if (runningKeyFile != null) {
+            try {
+                String keyText = Files.readString(Paths.get(runningKeyFile), StandardCharsets.UTF_8);
+                if (cascadeMargin != null) {
+                    solver.ngramScorer.setCascade(cascadeOrder, cascadeMargin);
+                }
+                results = solver.solveRunningKey(ciphertext, keyText, topResultsLimit);
+                if (solver.ngramScorer.isCascadeEnabled()) {
+                    System.out.println(solver.ngramScorer.getCascadeStats());
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading key text: " + e.getMessage());
+                return;
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        } else {
+            results = solver.solve(ciphertext);
+            results = results.subList(0, Math.min(topResultsLimit, results.size()));
+        }
+
+        System.out.println("\nTop results:");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            System.out.println("Result " + (i + 1) + ": " + result.key + " | Score: " + result.score);
+            System.out.println("Decrypted text: " + result.decryption);
+        }
+    }
+}
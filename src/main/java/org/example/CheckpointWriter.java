@@ -0,0 +1,62 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes checkpoints on a background thread so the search never waits for the disk.
+ * If a write is still in progress when the next snapshot arrives, only the newest
+ * pending snapshot is kept.
+ */
+public class CheckpointWriter implements AutoCloseable {
+
+    private final Path path;
+    private final ExecutorService executor;
+    private final AtomicReference<SearchCheckpoint> pending = new AtomicReference<>();
+
+    public CheckpointWriter(Path path) {
+        this.path = path;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a snapshot for writing. The caller must not modify it afterwards.
+     *
+     * @param snapshot the snapshot to write
+     */
+    public void submit(SearchCheckpoint snapshot) {
+        // Only schedule a task if none is waiting; a waiting task picks up the newest snapshot
+        if (pending.getAndSet(snapshot) == null) {
+            executor.execute(this::writePending);
+        }
+    }
+
+    private void writePending() {
+        SearchCheckpoint snapshot = pending.getAndSet(null);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            snapshot.save(path);
+        } catch (IOException e) {
+            System.err.println("Error writing checkpoint " + path + ": " + e.getMessage());
+        }
+    }
+
+    // Waits for outstanding writes to finish
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
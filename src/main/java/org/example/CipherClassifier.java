@@ -0,0 +1,243 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Cheap cipher-type identification. All features are collected in a single pass over the
+ * ciphertext so the classifier can sit in front of the (much more expensive) solvers and
+ * decide which of them are worth running.
+ */
+public class CipherClassifier {
+
+    // Reference values for English plaintext and for uniformly random letters
+    private static final double ENGLISH_IC = 0.066;
+    private static final double RANDOM_IC = 1.0 / 26;
+    private static final double ENGLISH_ENTROPY = 4.17;
+    private static final double RANDOM_ENTROPY = Math.log(26) / Math.log(2);
+
+    private static final int DEFAULT_MAX_PERIOD = 20;
+    private static final int MIN_COLUMN_LENGTH = 8; // shorter columns give meaningless IC values
+
+    /**
+     * Cipher families the router knows how to dispatch to.
+     */
+    public enum Family {
+        MONOALPHABETIC, // affine and keyword substitution
+        PLAYFAIR,
+        VIGENERE
+    }
+
+    private final int maxPeriod;
+
+    public CipherClassifier() {
+        this(DEFAULT_MAX_PERIOD);
+    }
+
+    public CipherClassifier(int maxPeriod) {
+        this.maxPeriod = maxPeriod;
+    }
+
+    /**
+     * Features computed in one pass over the ciphertext.
+     */
+    public static class Features {
+        public final int length;
+        public final double ic;
+        public final double[] periodicIC; // periodicIC[p] = average column IC for period p, index 0 unused
+        public final boolean evenLength;
+        public final boolean containsJ;
+        public final boolean doubledLetterInDigraph;
+        public final double entropy;
+
+        Features(int length, double ic, double[] periodicIC, boolean evenLength, boolean containsJ,
+                 boolean doubledLetterInDigraph, double entropy) {
+            this.length = length;
+            this.ic = ic;
+            this.periodicIC = periodicIC;
+            this.evenLength = evenLength;
+            this.containsJ = containsJ;
+            this.doubledLetterInDigraph = doubledLetterInDigraph;
+            this.entropy = entropy;
+        }
+
+        // Period (>= 2) whose columns look most like English, or 1 if no period was tested
+        public int bestPeriod() {
+            int best = 1;
+            double bestIC = 0.0;
+            for (int p = 2; p < periodicIC.length; p++) {
+                // Prefer the smallest period that reaches near the maximum; multiples score just as high
+                if (periodicIC[p] > bestIC + 0.002) {
+                    bestIC = periodicIC[p];
+                    best = p;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * A cipher family together with the confidence the classifier assigns to it.
+     */
+    public static class Classification {
+        public final Family family;
+        public final double confidence;
+
+        Classification(Family family, double confidence) {
+            this.family = family;
+            this.confidence = confidence;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.3f)", family, confidence);
+        }
+    }
+
+    /**
+     * Collects all features in a single pass. The text is expected to contain only symbols of
+     * the selected alphabet, as the input readers leave it.
+     *
+     * @param text the preprocessed ciphertext
+     * @return the collected features
+     */
+    public Features extractFeatures(String text) {
+        return extractFeatures(SegmentedText.of(text, Alphabet.selected()));
+    }
+
+    /**
+     * Collects all features in a single pass over the codes of the text, the messages taken
+     * together. Counters are kept per symbol of the text's alphabet.
+     *
+     * @param text the ciphertext
+     * @return the collected features
+     */
+    public Features extractFeatures(SegmentedText text) {
+        int n = text.length();
+        int radix = text.alphabet.size();
+        int periods = Math.max(1, Math.min(maxPeriod, n / MIN_COLUMN_LENGTH));
+
+        int[] counts = new int[radix];
+        // periodCounts[p][column * radix + letter]
+        int[][] periodCounts = new int[periods + 1][];
+        int[] columns = new int[periods + 1];
+        for (int p = 1; p <= periods; p++) {
+            periodCounts[p] = new int[p * radix];
+        }
+
+        // An alphabet that folds J onto I has no code of its own for it
+        int j = text.alphabet.code('J');
+        if (j >= 0 && text.alphabet.symbol(j) != 'J') {
+            j = -1;
+        }
+        boolean containsJ = false;
+        boolean doubled = false;
+        byte[] codes = text.codes;
+        for (int i = 0; i < n; i++) {
+            int c = codes[i];
+            counts[c]++;
+            if (c == j) {
+                containsJ = true;
+            }
+            if ((i & 1) == 1 && c == codes[i - 1]) {
+                doubled = true;
+            }
+            for (int p = 1; p <= periods; p++) {
+                periodCounts[p][columns[p] * radix + c]++;
+                if (++columns[p] == p) {
+                    columns[p] = 0;
+                }
+            }
+        }
+
+        double ic = indexOfCoincidence(counts, 0, radix, n);
+        double[] periodicIC = new double[periods + 1];
+        for (int p = 1; p <= periods; p++) {
+            double sum = 0.0;
+            for (int column = 0; column < p; column++) {
+                int columnLength = n / p + (column < n % p ? 1 : 0);
+                sum += indexOfCoincidence(periodCounts[p], column * radix, radix, columnLength);
+            }
+            periodicIC[p] = sum / p;
+        }
+
+        double entropy = 0.0;
+        for (int count : counts) {
+            if (count > 0) {
+                double prob = (double) count / n;
+                entropy -= prob * Math.log(prob) / Math.log(2);
+            }
+        }
+
+        return new Features(n, ic, periodicIC, n % 2 == 0, containsJ, doubled, entropy);
+    }
+
+    /**
+     * Ranks the cipher families for the given ciphertext, most likely first.
+     * Confidences are normalised to sum to 1.
+     *
+     * @param features features returned by {@link #extractFeatures(String)}
+     * @return the ranked families
+     */
+    public List<Classification> classify(Features features) {
+        // Monoalphabetic: the letter distribution is just a permutation of English
+        double mono = closeness(features.ic, ENGLISH_IC, RANDOM_IC)
+                * closeness(features.entropy, ENGLISH_ENTROPY, RANDOM_ENTROPY);
+
+        // Playfair: the structural signature is only plausible if nothing contradicts it
+        double playfair = 0.0;
+        if (features.evenLength && !features.containsJ && !features.doubledLetterInDigraph) {
+            // Probability that unrelated text shows the same signature purely by chance
+            double chance = Math.pow(25.0 / 26, features.length) * Math.pow(25.0 / 26, features.length / 2.0);
+            // Playfair flattens the distribution to roughly halfway between English and random
+            double flattened = closeness(features.ic, (ENGLISH_IC + RANDOM_IC) / 2, RANDOM_IC * 0.9);
+            playfair = (1.0 - chance) * Math.max(0.25, flattened);
+        }
+
+        // Vigenere: flat overall, but the columns of the right period look like English
+        double vigenere = 0.0;
+        int period = features.bestPeriod();
+        if (period > 1) {
+            double columnsLikeEnglish = closeness(features.periodicIC[period], ENGLISH_IC, RANDOM_IC);
+            double flatOverall = 1.0 - closeness(features.ic, ENGLISH_IC, RANDOM_IC);
+            double gain = Math.min(1.0, Math.max(0.0, (features.periodicIC[period] - features.ic) / (ENGLISH_IC - RANDOM_IC)));
+            vigenere = columnsLikeEnglish * flatOverall * gain;
+        }
+
+        double total = mono + playfair + vigenere;
+        List<Classification> ranked = new ArrayList<>();
+        if (total <= 0.0) {
+            // Nothing stands out; let every solver have a go with equal weight
+            for (Family family : Family.values()) {
+                ranked.add(new Classification(family, 1.0 / Family.values().length));
+            }
+            return ranked;
+        }
+        ranked.add(new Classification(Family.MONOALPHABETIC, mono / total));
+        ranked.add(new Classification(Family.PLAYFAIR, playfair / total));
+        ranked.add(new Classification(Family.VIGENERE, vigenere / total));
+        ranked.sort((a, b) -> Double.compare(b.confidence, a.confidence));
+        return ranked;
+    }
+
+    public List<Classification> classify(String text) {
+        return classify(extractFeatures(text));
+    }
+
+    // IC of one block of radix counters
+    private static double indexOfCoincidence(int[] counts, int offset, int radix, int n) {
+        if (n <= 1) {
+            return 0.0;
+        }
+        long sum = 0;
+        for (int i = offset; i < offset + radix; i++) {
+            sum += (long) counts[i] * (counts[i] - 1);
+        }
+        return (double) sum / ((double) n * (n - 1));
+    }
+
+    // 1.0 when value equals target, falling linearly to 0.0 at the reference value
+    private static double closeness(double value, double target, double reference) {
+        double distance = Math.abs(value - target) / Math.abs(reference - target);
+        return Math.max(0.0, 1.0 - distance);
+    }
+}
@@ -0,0 +1,199 @@
+package org.example;
+
+import java.io.*;
+import java.time.Instant;
+import java.util.*;
+
+import static org.example.Utils.getInputAndProcess;
+
+/**
+ * Front end that classifies a ciphertext and dispatches it only to the solvers of the
+ * likely cipher families. Every routing decision is appended to a TSV log together with
+ * the features and confidences, so the thresholds can be tuned against known outcomes.
+ */
+public class CipherRouter {
+
+    private static final String DEFAULT_LOG_FILE = "routing_log.tsv";
+
+    private final CipherClassifier classifier;
+    private final double minRelativeConfidence;
+    private final String logFile;
+
+    // Budget for the keyword substitution solver when the text is routed there
+    private int maxKeywordLength = 4;
+    private int numIterations = 1000000;
+    private int topResultsLimit = 10;
+
+    private NGramScorer ngramScorer;
+
+    /**
+     * @param classifier            the classifier to use
+     * @param minRelativeConfidence families whose confidence is at least this fraction of the best one are dispatched
+     * @param logFile               TSV file the routing decisions are appended to, or null to disable logging
+     */
+    public CipherRouter(CipherClassifier classifier, double minRelativeConfidence, String logFile) {
+        this.classifier = classifier;
+        this.minRelativeConfidence = minRelativeConfidence;
+        this.logFile = logFile;
+    }
+
+    public void setSubstitutionBudget(int maxKeywordLength, int numIterations, int topResultsLimit) {
+        this.maxKeywordLength = maxKeywordLength;
+        this.numIterations = numIterations;
+        this.topResultsLimit = topResultsLimit;
+    }
+
+    /**
+     * Classifies the ciphertext and returns the families that should be dispatched, most likely first.
+     *
+     * @param ciphertext the preprocessed ciphertext
+     * @return the selected families with their confidences
+     */
+    public List<CipherClassifier.Classification> route(String ciphertext) {
+        CipherClassifier.Features features = classifier.extractFeatures(ciphertext);
+        List<CipherClassifier.Classification> ranked = classifier.classify(features);
+
+        double best = ranked.get(0).confidence;
+        List<CipherClassifier.Classification> selected = new ArrayList<>();
+        for (CipherClassifier.Classification classification : ranked) {
+            if (classification.confidence >= best * minRelativeConfidence) {
+                selected.add(classification);
+            }
+        }
+
+        logDecision(features, ranked, selected);
+        return selected;
+    }
+
+    /**
+     * Routes the ciphertext and runs the solvers of every selected family.
+     *
+     * @param ciphertext the preprocessed ciphertext
+     */
+    public void routeAndSolve(String ciphertext) throws IOException {
+        List<CipherClassifier.Classification> selected = route(ciphertext);
+        System.out.println("Routing to: " + selected);
+
+        for (CipherClassifier.Classification classification : selected) {
+            System.out.println("\n=== " + classification.family + " ===");
+            switch (classification.family) {
+                case MONOALPHABETIC -> solveMonoalphabetic(ciphertext);
+                case VIGENERE -> solveVigenere(ciphertext);
+                case PLAYFAIR -> solvePlayfair(ciphertext);
+            }
+        }
+    }
+
+    // Affine first since it is cheap; keyword substitution covers what affine cannot
+    private void solveMonoalphabetic(String ciphertext) throws IOException {
+        NGramScorer scorer = getScorer();
+        AffineCipherSolver.printResults(AffineCipherSolver.solve(ciphertext, scorer, 5));
+
+        SubstitutionWithKeywordSolver solver = new SubstitutionWithKeywordSolver(scorer);
+        List<SubstitutionWithKeywordSolver.Result> results = solver.solve(ciphertext, maxKeywordLength, numIterations, topResultsLimit);
+        System.out.println("\nTop keyword substitution results:");
+        for (int i = 0; i < results.size(); i++) {
+            SubstitutionWithKeywordSolver.Result result = results.get(i);
+            System.out.println("Result " + (i + 1) + ": " + result.keyword + " | Score: " + result.score);
+            System.out.println("Decrypted text: " + result.decryption);
+        }
+    }
+
+    private void solvePlayfair(String ciphertext) throws IOException {
+        PlayfairSolver.Result result = new PlayfairSolver(getScorer()).solve(ciphertext);
+        System.out.println("\nBest Playfair square: " + result.square + " | Score: " + result.score);
+        System.out.println("Decrypted text: " + result.decryption);
+    }
+
+    // Print the period analysis, then search for the key at the most likely period
+    private void solveVigenere(String ciphertext) throws IOException {
+        int period = analyseVigenere(ciphertext);
+        VigenereSolver.Result result = new VigenereSolver(getScorer()).solve(SegmentedText.of(ciphertext, getScorer().alphabet()), period);
+        System.out.println("\nBest Vigenere key: " + result.key + " | Score: " + result.score);
+        System.out.println("Decrypted text: " + result.decryption);
+    }
+
+    private int analyseVigenere(String ciphertext) {
+        CipherClassifier.Features features = classifier.extractFeatures(ciphertext);
+        int period = features.bestPeriod();
+        System.out.printf("Most likely period from IC profile: %d (average column IC %.4f)%n",
+                period, features.periodicIC[period]);
+        try {
+            System.out.printf("Friedman estimate: %.2f%n", FriedmannTest.estimateKeywordLength(ciphertext));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Friedman estimate unavailable: " + e.getMessage());
+        }
+        List<String> columns = TextDividerICCalculator.divideTextByKeywordLength(ciphertext, period);
+        for (int i = 0; i < columns.size(); i++) {
+            System.out.printf("Index of Coincidence for String %d: %.4f%n", i + 1,
+                    TextDividerICCalculator.calculateIC(columns.get(i)));
+        }
+        return period;
+    }
+
+    // The scorer is only loaded when a family that needs it is selected
+    private NGramScorer getScorer() throws IOException {
+        if (ngramScorer == null) {
+            ngramScorer = SubstitutionWithKeywordSolver.loadNGramScorer();
+        }
+        return ngramScorer;
+    }
+
+    private void logDecision(CipherClassifier.Features features, List<CipherClassifier.Classification> ranked,
+                             List<CipherClassifier.Classification> selected) {
+        if (logFile == null) {
+            return;
+        }
+        File file = new File(logFile);
+        boolean writeHeader = !file.exists() || file.length() == 0;
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            if (writeHeader) {
+                out.println("timestamp\tlength\tic\tentropy\tbest_period\tbest_period_ic\teven_length\tcontains_j"
+                        + "\tdoubled_in_digraph\tmono_conf\tplayfair_conf\tvigenere_conf\tdispatched");
+            }
+            Map<CipherClassifier.Family, Double> confidence = new EnumMap<>(CipherClassifier.Family.class);
+            for (CipherClassifier.Classification classification : ranked) {
+                confidence.put(classification.family, classification.confidence);
+            }
+            StringJoiner dispatched = new StringJoiner(",");
+            for (CipherClassifier.Classification classification : selected) {
+                dispatched.add(classification.family.name());
+            }
+            int period = features.bestPeriod();
+            out.printf(Locale.ROOT, "%s\t%d\t%.5f\t%.4f\t%d\t%.5f\t%b\t%b\t%b\t%.4f\t%.4f\t%.4f\t%s%n",
+                    Instant.now(), features.length, features.ic, features.entropy, period,
+                    features.periodicIC[period], features.evenLength, features.containsJ,
+                    features.doubledLetterInDigraph,
+                    confidence.get(CipherClassifier.Family.MONOALPHABETIC),
+                    confidence.get(CipherClassifier.Family.PLAYFAIR),
+                    confidence.get(CipherClassifier.Family.VIGENERE),
+                    dispatched);
+        } catch (IOException e) {
+            System.err.println("Error writing routing log: " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        double minRelativeConfidence = 0.5;
+        String logFile = DEFAULT_LOG_FILE;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--min-confidence" -> minRelativeConfidence = Double.parseDouble(args[++i]);
+                case "--log" -> logFile = args[++i];
+                case "--no-log" -> logFile = null;
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        String ciphertext = getInputAndProcess();
+        CipherRouter router = new CipherRouter(new CipherClassifier(), minRelativeConfidence, logFile);
+        try {
+            router.routeAndSolve(ciphertext);
+        } catch (IOException e) {
+            System.err.println("Error loading N-gram scorer: " + e.getMessage());
+        }
+    }
+}
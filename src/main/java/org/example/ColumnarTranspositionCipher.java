@@ -0,0 +1,87 @@
+package org.example;
+
+import java.util.*;
+
+public class ColumnarTranspositionCipher {
+
+    /**
+     * Read order of the columns: rank of every key letter, ties broken left to right.
+     * "ZEBRA" gives [4, 2, 1, 3, 0].
+     */
+    public static int[] columnRanks(String keyword) {
+        return columnRanks(keyword, Alphabet.LATIN_26);
+    }
+
+    // Key letters are ranked in the order of the alphabet, e.g. Č between C and D for Czech
+    public static int[] columnRanks(String keyword, Alphabet alphabet) {
+        byte[] key = alphabet.encode(keyword);
+        if (key.length == 0) {
+            throw new IllegalArgumentException("Keyword must contain at least one letter.");
+        }
+        Integer[] columns = new Integer[key.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i;
+        }
+        Arrays.sort(columns, Comparator.comparingInt(i -> key[i])); // stable, so ties keep their order
+        int[] ranks = new int[columns.length];
+        for (int rank = 0; rank < columns.length; rank++) {
+            ranks[columns[rank]] = rank;
+        }
+        return ranks;
+    }
+
+    // Pad with X to complete the last row, since the solver only handles complete rectangles
+    public static String pad(String plaintext, int width) {
+        return pad(plaintext, width, Alphabet.LATIN_26);
+    }
+
+    public static String pad(String plaintext, int width, Alphabet alphabet) {
+        StringBuilder padded = new StringBuilder(alphabet.normalise(plaintext));
+        while (padded.length() % width != 0) {
+            padded.append('X');
+        }
+        return padded.toString();
+    }
+
+    // Write the padded plaintext in rows under the keyword and read the columns in key order
+    public static String encrypt(String plaintext, String keyword) {
+        return encrypt(plaintext, keyword, Alphabet.LATIN_26);
+    }
+
+    public static String encrypt(String plaintext, String keyword, Alphabet alphabet) {
+        int[] ranks = columnRanks(keyword, alphabet);
+        String text = pad(plaintext, ranks.length, alphabet);
+        int rows = text.length() / ranks.length;
+        char[] result = new char[text.length()];
+        for (int column = 0; column < ranks.length; column++) {
+            for (int row = 0; row < rows; row++) {
+                result[ranks[column] * rows + row] = text.charAt(row * ranks.length + column);
+            }
+        }
+        return new String(result);
+    }
+
+    public static String decrypt(String ciphertext, String keyword) {
+        return decrypt(ciphertext, columnRanks(keyword));
+    }
+
+    // Inverse of encrypt for a complete rectangle; ranks[c] is the read position of plaintext column c
+    public static String decrypt(String ciphertext, int[] ranks) {
+        return decrypt(ciphertext, ranks, Alphabet.LATIN_26);
+    }
+
+    public static String decrypt(String ciphertext, int[] ranks, Alphabet alphabet) {
+        String text = alphabet.normalise(ciphertext);
+        if (text.length() % ranks.length != 0) {
+            throw new IllegalArgumentException("Ciphertext length is not a multiple of the key length.");
+        }
+        int rows = text.length() / ranks.length;
+        char[] result = new char[text.length()];
+        for (int column = 0; column < ranks.length; column++) {
+            for (int row = 0; row < rows; row++) {
+                result[row * ranks.length + column] = text.charAt(ranks[column] * rows + row);
+            }
+        }
+        return new String(result);
+    }
+}
@@ -0,0 +1,319 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.example.Utils.getInputAndProcess;
+
+/**
+ * Solves columnar transposition with complete rectangles. For every width that divides the
+ * text length, the ciphertext splits into fixed columns, and how well column j follows
+ * column i is the same whatever the rest of the order is. Those scores are computed once per
+ * width from the bigram and trigram tables, into a pair matrix and a triple tensor; annealing
+ * over column orders then only adds up matrix entries, so a step costs O(width) however long
+ * the text is. Only the finalists are decrypted and scored with the full scorer.
+ */
+public class ColumnarTranspositionSolver {
+
+    /**
+     * Best column order found for one width.
+     */
+    public static class Result {
+        // ranks[c] is the read position of plaintext column c, as from ColumnarTranspositionCipher.columnRanks
+        public final int[] ranks;
+        public final double score;
+        public final String decryption;
+
+        Result(int[] ranks, double score, String decryption) {
+            this.ranks = ranks;
+            this.score = score;
+            this.decryption = decryption;
+        }
+
+        public int width() {
+            return ranks.length;
+        }
+    }
+
+    private final NGramScorer ngramScorer;
+    private int minWidth = 2;
+    private int maxWidth = 20;
+    private int restarts = 10;
+    private int stepsPerRestart = 20000;
+    private long seed = System.nanoTime();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private SearchMonitor monitor = SearchMonitor.NONE;
+
+    public ColumnarTranspositionSolver(NGramScorer ngramScorer) {
+        if (ngramScorer.table(2) == null) {
+            throw new IllegalArgumentException("The transposition solver needs a bigram table.");
+        }
+        this.ngramScorer = ngramScorer;
+    }
+
+    public void setWidthRange(int minWidth, int maxWidth) {
+        this.minWidth = minWidth;
+        this.maxWidth = maxWidth;
+    }
+
+    public void setBudget(int restarts, int stepsPerRestart) {
+        if (restarts < 1 || stepsPerRestart < 1) {
+            throw new IllegalArgumentException("Restarts and steps per restart must be at least 1.");
+        }
+        this.restarts = restarts;
+        this.stepsPerRestart = stepsPerRestart;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Told about the column orders tried and the best finalist of every width
+    public void setMonitor(SearchMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Searches every width in the range that divides the text length, widths in parallel.
+     *
+     * @return the best order of every width, highest full score first
+     */
+    public List<Result> solve(String ciphertext) {
+        byte[] codes = SegmentedText.of(ciphertext, ngramScorer.alphabet()).codes;
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (int width = Math.max(2, minWidth); width <= Math.min(maxWidth, codes.length / 2); width++) {
+            if (codes.length % width == 0) {
+                int w = width;
+                tasks.add(() -> solveWidth(codes, w, new Random(seed + w)));
+            }
+        }
+        if (tasks.isEmpty()) {
+            throw new IllegalArgumentException("No width between " + minWidth + " and " + maxWidth
+                    + " divides the text length " + codes.length + ".");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        try {
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            results.sort(Comparator.comparingDouble(r -> -r.score));
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result solveWidth(byte[] codes, int width, Random random) {
+        int rows = codes.length / width;
+        double[][] pairs = new double[width][width];
+        double[][][] triples = ngramScorer.table(3) == null ? null : new double[width][width][width];
+        fillScores(codes, width, rows, pairs, triples);
+
+        // Annealing runs on a scale of one pair score per row
+        double startTemperature = 0.5 * rows;
+        double endTemperature = 0.01 * rows;
+        double cooling = Math.pow(endTemperature / startTemperature, 1.0 / stepsPerRestart);
+
+        // Finalists: the best order of every restart, rescored on the full text
+        Result best = null;
+        int[] order = new int[width];
+        int[] candidate = new int[width];
+        for (int restart = 0; restart < restarts; restart++) {
+            for (int i = 0; i < width; i++) {
+                order[i] = i;
+            }
+            shuffle(order, random);
+            double score = orderScore(order, pairs, triples);
+            int[] restartBest = order.clone();
+            double restartBestScore = score;
+
+            double temperature = startTemperature;
+            for (int step = 0; step < stepsPerRestart; step++) {
+                mutate(order, candidate, random);
+                double candidateScore = orderScore(candidate, pairs, triples);
+                double delta = candidateScore - score;
+                if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                    System.arraycopy(candidate, 0, order, 0, width);
+                    score = candidateScore;
+                    if (score > restartBestScore) {
+                        restartBestScore = score;
+                        System.arraycopy(order, 0, restartBest, 0, width);
+                    }
+                }
+                temperature *= cooling;
+            }
+
+            monitor.candidates(stepsPerRestart + 1L);
+            Result finalist = rescore(codes, restartBest);
+            if (best == null || finalist.score > best.score) {
+                best = finalist;
+                monitor.improved(finalist.score, () -> finalist.decryption);
+            }
+        }
+        return best;
+    }
+
+    // pairs[i][j]: column j directly right of column i; triples[i][j][k]: columns i, j, k in a row
+    private void fillScores(byte[] codes, int width, int rows, double[][] pairs, double[][][] triples) {
+        double[] bigrams = ngramScorer.table(2);
+        double[] trigrams = ngramScorer.table(3);
+        int radix = ngramScorer.alphabet().size();
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < width; j++) {
+                if (i == j) {
+                    continue;
+                }
+                double score = 0.0;
+                for (int r = 0; r < rows; r++) {
+                    score += bigrams[codes[i * rows + r] * radix + codes[j * rows + r]];
+                }
+                pairs[i][j] = score;
+
+                if (triples != null) {
+                    for (int k = 0; k < width; k++) {
+                        if (k == i || k == j) {
+                            continue;
+                        }
+                        double tripleScore = 0.0;
+                        for (int r = 0; r < rows; r++) {
+                            tripleScore += trigrams[(codes[i * rows + r] * radix + codes[j * rows + r]) * radix + codes[k * rows + r]];
+                        }
+                        triples[i][j][k] = tripleScore;
+                    }
+                }
+            }
+        }
+    }
+
+    // order[p] is the ciphertext column placed at plaintext position p
+    private static double orderScore(int[] order, double[][] pairs, double[][][] triples) {
+        double score = 0.0;
+        for (int p = 0; p + 1 < order.length; p++) {
+            score += pairs[order[p]][order[p + 1]];
+            if (triples != null && p + 2 < order.length) {
+                score += triples[order[p]][order[p + 1]][order[p + 2]];
+            }
+        }
+        return score;
+    }
+
+    // Swap two columns, reverse a run of columns, or move a run elsewhere
+    private static void mutate(int[] order, int[] candidate, Random random) {
+        int width = order.length;
+        System.arraycopy(order, 0, candidate, 0, width);
+        int i = random.nextInt(width);
+        int j = random.nextInt(width);
+        if (i > j) {
+            int temp = i;
+            i = j;
+            j = temp;
+        }
+        int operation = random.nextInt(4);
+        if (operation <= 1) {
+            candidate[i] = order[j];
+            candidate[j] = order[i];
+        } else if (operation == 2) {
+            for (int k = i; k <= j; k++) {
+                candidate[k] = order[i + j - k];
+            }
+        } else {
+            // Move order[i..j] to start at position target in the remaining columns
+            int length = j - i + 1;
+            int target = random.nextInt(width - length + 1);
+            int[] rest = new int[width - length];
+            int n = 0;
+            for (int k = 0; k < width; k++) {
+                if (k < i || k > j) {
+                    rest[n++] = order[k];
+                }
+            }
+            System.arraycopy(rest, 0, candidate, 0, target);
+            System.arraycopy(order, i, candidate, target, length);
+            System.arraycopy(rest, target, candidate, target + length, rest.length - target);
+        }
+    }
+
+    private Result rescore(byte[] codes, int[] order) {
+        int width = order.length;
+        int rows = codes.length / width;
+        byte[] plain = new byte[codes.length];
+        for (int p = 0; p < width; p++) {
+            for (int r = 0; r < rows; r++) {
+                plain[r * width + p] = codes[order[p] * rows + r];
+            }
+        }
+        double score = ngramScorer.score(plain, 0, plain.length);
+        return new Result(order.clone(), score, ngramScorer.alphabet().decode(plain, 0, plain.length));
+    }
+
+    private static void shuffle(int[] arr, Random random) {
+        for (int i = arr.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = arr[i];
+            arr[i] = arr[j];
+            arr[j] = temp;
+        }
+    }
+
+    public static void main(String[] args) {
+        int topResultsLimit = 5;
+        ColumnarTranspositionSolver solver;
+        try {
+            solver = new ColumnarTranspositionSolver(SubstitutionWithKeywordSolver.loadNGramScorer());
+        } catch (IOException e) {
+            System.err.println("Error loading N-gram scorer: " + e.getMessage());
+            return;
+        }
+        int minWidth = solver.minWidth;
+        int maxWidth = solver.maxWidth;
+        int restarts = solver.restarts;
+        int stepsPerRestart = solver.stepsPerRestart;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--min-width" -> minWidth = Integer.parseInt(args[++i]);
+                case "--max-width" -> maxWidth = Integer.parseInt(args[++i]);
+                case "--restarts" -> restarts = Integer.parseInt(args[++i]);
+                case "--steps" -> stepsPerRestart = Integer.parseInt(args[++i]);
+                case "--seed" -> solver.setSeed(Long.parseLong(args[++i]));
+                case "--top" -> topResultsLimit = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        try {
+            solver.setWidthRange(minWidth, maxWidth);
+            solver.setBudget(restarts, stepsPerRestart);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        String ciphertext = getInputAndProcess();
+        List<Result> results;
+        try {
+            results = solver.solve(ciphertext);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        System.out.println("\nTop results:");
+        for (int i = 0; i < Math.min(topResultsLimit, results.size()); i++) {
+            Result result = results.get(i);
+            System.out.println("Result " + (i + 1) + ": width " + result.width() + ", column ranks "
+                    + Arrays.toString(result.ranks) + " | Score: " + result.score);
+            System.out.println("Decrypted text: " + result.decryption);
+        }
+    }
+}
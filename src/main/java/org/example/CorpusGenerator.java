@@ -0,0 +1,263 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Generates seeded corpora of known-key ciphertexts for benchmarking the solvers. Plaintexts
+ * are random windows of a source text, keys are drawn at random from the key space each
+ * solver searches.
+ */
+public class CorpusGenerator {
+
+    private static final String DEFAULT_SOURCE = "src/main/resources/benchmark_plaintext.txt";
+    private static final int HOMOPHONIC_SYMBOLS = 50;
+
+    public enum Cipher {
+        AFFINE,
+        KEYWORD_SUBSTITUTION,
+        PLAYFAIR,
+        VIGENERE,
+        AUTOKEY,
+        TRANSPOSITION,
+        HOMOPHONIC
+    }
+
+    /**
+     * One generated plaintext/ciphertext pair.
+     */
+    public static class Sample {
+        public final Cipher cipher;
+        public final int length;
+        public final String key;
+        public final String plaintext;
+        public final String ciphertext;
+        // What a solver recovers with the correct key (Playfair adds padding letters and merges J)
+        public final String expectedDecryption;
+
+        Sample(Cipher cipher, int length, String key, String plaintext, String ciphertext, String expectedDecryption) {
+            this.cipher = cipher;
+            this.length = length;
+            this.key = key;
+            this.plaintext = plaintext;
+            this.ciphertext = ciphertext;
+            this.expectedDecryption = expectedDecryption;
+        }
+    }
+
+    private final String source;
+    private final Random random;
+    private final int maxKeywordLength;
+    private final Alphabet alphabet;
+    // Affine multipliers coprime with the alphabet size
+    private final int[] affineMultipliers;
+
+    public CorpusGenerator(String sourceText, long seed, int maxKeywordLength) {
+        this(sourceText, seed, maxKeywordLength, Alphabet.LATIN_26);
+    }
+
+    /**
+     * @param sourceText       text the plaintexts are cut from; only the symbols of the alphabet are used
+     * @param seed             seed of the generator, equal seeds give equal corpora
+     * @param maxKeywordLength longest keyword generated for keyword substitution
+     * @param alphabet         alphabet of the plaintexts and keys
+     */
+    public CorpusGenerator(String sourceText, long seed, int maxKeywordLength, Alphabet alphabet) {
+        this.source = alphabet.normalise(sourceText);
+        if (source.isEmpty()) {
+            throw new IllegalArgumentException("Source text contains no letters.");
+        }
+        this.random = new Random(seed);
+        this.maxKeywordLength = maxKeywordLength;
+        this.alphabet = alphabet;
+        this.affineMultipliers = coprimeMultipliers(alphabet.size());
+    }
+
+    private static int[] coprimeMultipliers(int m) {
+        List<Integer> multipliers = new ArrayList<>();
+        for (int a = 1; a < m; a++) {
+            if (AffineCipherSolver.gcd(a, m) == 1) {
+                multipliers.add(a);
+            }
+        }
+        return multipliers.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Playfair squares hold the Latin letters only
+    public boolean supports(Cipher cipher) {
+        return cipher != Cipher.PLAYFAIR || alphabet.sameCodes(Alphabet.LATIN_26);
+    }
+
+    public static String loadSource(String path) throws IOException {
+        return Files.readString(Paths.get(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates samplesPerLength samples for every length.
+     *
+     * @param cipher           the cipher to encrypt with
+     * @param lengths          plaintext lengths in letters
+     * @param samplesPerLength number of samples per length
+     * @return the samples, grouped by length in the given order
+     */
+    public List<Sample> generate(Cipher cipher, int[] lengths, int samplesPerLength) {
+        List<Sample> samples = new ArrayList<>();
+        for (int length : lengths) {
+            for (int i = 0; i < samplesPerLength; i++) {
+                samples.add(generateSample(cipher, length));
+            }
+        }
+        return samples;
+    }
+
+    public Sample generateSample(Cipher cipher, int length) {
+        String plaintext = randomPlaintext(length);
+        switch (cipher) {
+            case AFFINE -> {
+                int a = affineMultipliers[random.nextInt(affineMultipliers.length)];
+                int b = random.nextInt(alphabet.size());
+                String ciphertext = AffineCipherSolver.encryptAffine(plaintext, a, b, alphabet);
+                return new Sample(cipher, length, a + "," + b, plaintext, ciphertext, plaintext);
+            }
+            case KEYWORD_SUBSTITUTION -> {
+                String keyword = randomKeyword(1 + random.nextInt(maxKeywordLength), true);
+                String ciphertext = SubstitutionWithKeywordSolver.encrypt(plaintext, keyword, alphabet);
+                return new Sample(cipher, length, keyword, plaintext, ciphertext, plaintext);
+            }
+            case PLAYFAIR -> {
+                if (!supports(cipher)) {
+                    throw new IllegalArgumentException("Playfair samples need an A-Z alphabet, not " + alphabet + ".");
+                }
+                String keyword = randomKeyword(5 + random.nextInt(4), false);
+                PlayfairCipher playfair = new PlayfairCipher();
+                playfair.createCipherSquare(keyword, false);
+                String ciphertext = playfair.encrypt(plaintext);
+                return new Sample(cipher, length, keyword, plaintext, ciphertext, playfair.decrypt(ciphertext));
+            }
+            case VIGENERE -> {
+                String key = randomKeyword(3 + random.nextInt(6), false);
+                String ciphertext = VigenereCipher.encrypt(plaintext, key, alphabet);
+                return new Sample(cipher, length, key, plaintext, ciphertext, plaintext);
+            }
+            case AUTOKEY -> {
+                String primer = randomKeyword(3 + random.nextInt(6), false);
+                String ciphertext = AutokeyCipher.encrypt(plaintext, primer, alphabet);
+                return new Sample(cipher, length, primer, plaintext, ciphertext, plaintext);
+            }
+            case TRANSPOSITION -> {
+                String keyword = randomKeyword(4 + random.nextInt(7), true);
+                String ciphertext = ColumnarTranspositionCipher.encrypt(plaintext, keyword, alphabet);
+                return new Sample(cipher, length, keyword, plaintext, ciphertext,
+                        ColumnarTranspositionCipher.pad(plaintext, keyword.length(), alphabet));
+            }
+            case HOMOPHONIC -> {
+                int[] key = HomophonicCipher.randomKey(HOMOPHONIC_SYMBOLS, letterWeights(), random);
+                String ciphertext = HomophonicCipher.encrypt(plaintext, key, random, alphabet);
+                return new Sample(cipher, length, alphabet.decode(toCodes(key), 0, key.length), plaintext, ciphertext, plaintext);
+            }
+            default -> throw new IllegalArgumentException("Unknown cipher: " + cipher);
+        }
+    }
+
+    // Letter frequencies of the source, so frequent letters get more homophones
+    private double[] letterWeights() {
+        double[] weights = new double[alphabet.size()];
+        for (int i = 0; i < source.length(); i++) {
+            weights[alphabet.code(source.charAt(i))]++;
+        }
+        return weights;
+    }
+
+    private static byte[] toCodes(int[] key) {
+        byte[] codes = new byte[key.length];
+        for (int i = 0; i < key.length; i++) {
+            codes[i] = (byte) key[i];
+        }
+        return codes;
+    }
+
+    // Random window of the source, wrapping around if the source is shorter than the window
+    private String randomPlaintext(int length) {
+        StringBuilder plaintext = new StringBuilder(length);
+        int position = random.nextInt(source.length());
+        while (plaintext.length() < length) {
+            int end = Math.min(source.length(), position + length - plaintext.length());
+            plaintext.append(source, position, end);
+            position = 0;
+        }
+        return plaintext.toString();
+    }
+
+    private String randomKeyword(int length, boolean distinctLetters) {
+        StringBuilder keyword = new StringBuilder(length);
+        while (keyword.length() < length) {
+            char c = alphabet.symbol(random.nextInt(alphabet.size()));
+            if (!distinctLetters || keyword.indexOf(String.valueOf(c)) < 0) {
+                keyword.append(c);
+            }
+        }
+        return keyword.toString();
+    }
+
+    // Write the samples as tab-separated lines: cipher, length, key, plaintext, ciphertext
+    public static void writeTsv(List<Sample> samples, Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.println("cipher\tlength\tkey\tplaintext\tciphertext");
+            for (Sample sample : samples) {
+                out.println(sample.cipher + "\t" + sample.length + "\t" + sample.key + "\t"
+                        + sample.plaintext + "\t" + sample.ciphertext);
+            }
+        }
+    }
+
+    static int[] parseLengths(String value) {
+        String[] parts = value.split(",");
+        int[] lengths = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            lengths[i] = Integer.parseInt(parts[i].trim());
+        }
+        return lengths;
+    }
+
+    public static void main(String[] args) {
+        long seed = 1;
+        int[] lengths = {50, 100, 200, 400};
+        int samplesPerLength = 10;
+        int maxKeywordLength = 4;
+        String sourcePath = DEFAULT_SOURCE;
+        String outPath = "corpus.tsv";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--lengths" -> lengths = parseLengths(args[++i]);
+                case "--samples" -> samplesPerLength = Integer.parseInt(args[++i]);
+                case "--max-keyword-length" -> maxKeywordLength = Integer.parseInt(args[++i]);
+                case "--source" -> sourcePath = args[++i];
+                case "--out" -> outPath = args[++i];
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        try {
+            CorpusGenerator generator = new CorpusGenerator(loadSource(sourcePath), seed, maxKeywordLength,
+                    Alphabet.selected());
+            List<Sample> samples = new ArrayList<>();
+            for (Cipher cipher : Cipher.values()) {
+                if (!generator.supports(cipher)) {
+                    System.out.println("Skipping " + cipher + ": not defined for this alphabet");
+                    continue;
+                }
+                samples.addAll(generator.generate(cipher, lengths, samplesPerLength));
+            }
+            writeTsv(samples, Paths.get(outPath));
+            System.out.println("Wrote " + samples.size() + " samples to " + outPath);
+        } catch (IOException e) {
+            System.err.println("Error generating corpus: " + e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package org.example;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import static org.example.Utils.getInputAndProcess;
 
 public class FriedmannTest {
@@ -10,17 +7,20 @@ public class FriedmannTest {
     // Method to calculate the Index of Coincidence (IC) for a given text
     public static double calculateIC(String text) {
         int n = text.length();
-        Map<Character, Integer> frequencyMap = new HashMap<>();
-
-        // Calculate frequency of each character
-        for (char ch : text.toCharArray()) {
-            frequencyMap.put(ch, frequencyMap.getOrDefault(ch, 0) + 1);
+        // Calculate frequency of each symbol of the alphabet
+        Alphabet alphabet = Alphabet.selected();
+        int[] frequencies = new int[alphabet.size()];
+        for (int i = 0; i < n; i++) {
+            int code = alphabet.code(text.charAt(i));
+            if (code >= 0) {
+                frequencies[code]++;
+            }
         }
 
         // Calculate the IC using the formula IC = (Σ f_i * (f_i - 1)) / (n * (n - 1))
         double icSum = 0.0;
-        for (int frequency : frequencyMap.values()) {
-            icSum += frequency * (frequency - 1);
+        for (int frequency : frequencies) {
+            icSum += (double) frequency * (frequency - 1);
         }
 
         System.out.println("IC: " + icSum / (n * (n - 1)));
@@ -46,6 +46,10 @@ public class FriedmannTest {
 
     // Main method for testing
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.err.println("Unknown option: " + args[0]);
+            return;
+        }
         String ciphertext = getInputAndProcess();
 
         try {
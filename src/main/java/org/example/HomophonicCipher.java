@@ -0,0 +1,85 @@
+package org.example;
+
+import java.util.*;
+
+public class HomophonicCipher {
+
+    /**
+     * Random key with the given number of symbols: key[symbol] is the letter code the symbol
+     * stands for. Every letter gets at least one symbol; the rest are shared out in proportion
+     * to the letter weights, so frequent letters get more homophones.
+     *
+     * @param symbolCount   number of symbols, at least one per letter
+     * @param letterWeights relative frequency of each letter code of the alphabet
+     */
+    public static int[] randomKey(int symbolCount, double[] letterWeights, Random random) {
+        int letters = letterWeights.length;
+        if (symbolCount < letters) {
+            throw new IllegalArgumentException("A homophonic key needs at least " + letters + " symbols.");
+        }
+        double total = 0.0;
+        for (double weight : letterWeights) {
+            total += weight;
+        }
+
+        // Largest-remainder allocation of the extra symbols
+        int extra = symbolCount - letters;
+        int[] homophones = new int[letters];
+        double[] remainders = new double[letters];
+        int assigned = 0;
+        for (int c = 0; c < letters; c++) {
+            double share = extra * letterWeights[c] / total;
+            homophones[c] = 1 + (int) share;
+            remainders[c] = share - (int) share;
+            assigned += (int) share;
+        }
+        while (assigned < extra) {
+            int best = 0;
+            for (int c = 1; c < letters; c++) {
+                if (remainders[c] > remainders[best]) {
+                    best = c;
+                }
+            }
+            homophones[best]++;
+            remainders[best] = -1;
+            assigned++;
+        }
+
+        int[] key = new int[symbolCount];
+        int symbol = 0;
+        for (int c = 0; c < letters; c++) {
+            for (int h = 0; h < homophones[c]; h++) {
+                key[symbol++] = c;
+            }
+        }
+        for (int i = key.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = key[i];
+            key[i] = key[j];
+            key[j] = temp;
+        }
+        return key;
+    }
+
+    // Encrypt every letter as a random one of its symbols, written as space-separated two-digit numbers
+    public static String encrypt(String plaintext, int[] key, Random random) {
+        return encrypt(plaintext, key, random, Alphabet.LATIN_26);
+    }
+
+    public static String encrypt(String plaintext, int[] key, Random random, Alphabet alphabet) {
+        List<List<Integer>> symbolsOf = new ArrayList<>();
+        for (int c = 0; c < alphabet.size(); c++) {
+            symbolsOf.add(new ArrayList<>());
+        }
+        for (int symbol = 0; symbol < key.length; symbol++) {
+            symbolsOf.get(key[symbol]).add(symbol);
+        }
+
+        StringJoiner ciphertext = new StringJoiner(" ");
+        for (byte c : alphabet.encode(plaintext)) {
+            List<Integer> symbols = symbolsOf.get(c);
+            ciphertext.add(String.format("%02d", symbols.get(random.nextInt(symbols.size()))));
+        }
+        return ciphertext.toString();
+    }
+}
@@ -0,0 +1,313 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.example.Utils.getRawInput;
+
+/**
+ * Solves homophonic substitution, where several symbols stand for the same letter. The key
+ * maps every symbol to a letter; annealing reassigns one symbol at a time. Each symbol keeps
+ * the list of its positions and of the n-gram windows containing them, so a move only
+ * rescores those windows instead of the whole text, and the letter counts behind the
+ * frequency term change by the symbol's count. Restarts run in parallel.
+ */
+public class HomophonicSolver {
+
+    /**
+     * Best key found and the decryption it gives.
+     */
+    public static class Result {
+        // key[symbol id] is the letter code of the symbol
+        public final int[] key;
+        public final List<String> symbols;
+        // What the annealing maximises: n-gram score minus the weighted chi-squared term
+        public final double score;
+        public final double ngramScore;
+        public final String decryption;
+
+        final Alphabet alphabet;
+
+        Result(int[] key, List<String> symbols, double score, double ngramScore, String decryption, Alphabet alphabet) {
+            this.key = key;
+            this.symbols = symbols;
+            this.score = score;
+            this.ngramScore = ngramScore;
+            this.decryption = decryption;
+            this.alphabet = alphabet;
+        }
+
+        // Symbols grouped by the letter they stand for, e.g. "E: 07 31 44"
+        public String describeKey() {
+            StringJoiner lines = new StringJoiner("\n");
+            for (int c = 0; c < alphabet.size(); c++) {
+                StringJoiner line = new StringJoiner(" ", alphabet.symbol(c) + ": ", "");
+                for (int symbol = 0; symbol < key.length; symbol++) {
+                    if (key[symbol] == c) {
+                        line.add(symbols.get(symbol));
+                    }
+                }
+                lines.add(line.toString());
+            }
+            return lines.toString();
+        }
+    }
+
+    private final NGramScorer ngramScorer;
+    private int restarts = 8;
+    private int stepsPerRestart = 2000000;
+    // Per occurrence of the moved symbol: a step rescores all its positions, so its score change
+    // grows with the letters per symbol and a fixed temperature freezes long texts too early
+    private double startTemperature = 2.5;
+    private double endTemperature = 0.05;
+    // Only n-grams of at least this length are scored; lower orders reward filling the text with E and T
+    private int minOrder = 4;
+    // Weight of the chi-squared distance between the decryption's letter counts and English
+    private double frequencyWeight = 2.0;
+    private long seed = System.nanoTime();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private SearchMonitor monitor = SearchMonitor.NONE;
+
+    public HomophonicSolver(NGramScorer ngramScorer) {
+        this.ngramScorer = ngramScorer;
+    }
+
+    public void setBudget(int restarts, int stepsPerRestart) {
+        this.restarts = restarts;
+        this.stepsPerRestart = stepsPerRestart;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Told about the steps of every restart and the key each restart ends with
+    public void setMonitor(SearchMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    public Result solve(SymbolTokenizer.Tokens tokens) {
+        int[] ids = tokens.ids;
+        int symbolCount = tokens.symbolCount();
+        if (ids.length == 0) {
+            throw new IllegalArgumentException("Ciphertext contains no symbols.");
+        }
+
+        // Position lists per symbol and the windows containing them
+        int[] offsets = {0, ids.length};
+        List<List<Integer>> positionLists = new ArrayList<>();
+        for (int s = 0; s < symbolCount; s++) {
+            positionLists.add(new ArrayList<>());
+        }
+        for (int i = 0; i < ids.length; i++) {
+            positionLists.get(ids[i]).add(i);
+        }
+        int[][] positions = new int[symbolCount][];
+        int[][][] windows = new int[symbolCount][][];
+        for (int s = 0; s < symbolCount; s++) {
+            positions[s] = positionLists.get(s).stream().mapToInt(Integer::intValue).toArray();
+            windows[s] = scoredOrders(ngramScorer.windowsContaining(positions[s], offsets));
+        }
+        int[] all = new int[ids.length];
+        Arrays.setAll(all, i -> i);
+        int[][] allWindows = scoredOrders(ngramScorer.windowsContaining(all, offsets));
+
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (int restart = 0; restart < restarts; restart++) {
+            long restartSeed = seed + restart;
+            tasks.add(() -> anneal(tokens, positions, windows, allWindows, new Random(restartSeed)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, restarts)));
+        try {
+            Result best = null;
+            for (Future<Result> future : executor.invokeAll(tasks)) {
+                Result result = future.get();
+                if (best == null || result.score > best.score) {
+                    best = result;
+                }
+            }
+            return best;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result anneal(SymbolTokenizer.Tokens tokens, int[][] positions, int[][][] windows, int[][] allWindows, Random random) {
+        int symbolCount = tokens.symbolCount();
+        int[] key = new int[symbolCount];
+        double[] letterWeights = letterWeights();
+        for (int s = 0; s < symbolCount; s++) {
+            key[s] = sampleLetter(letterWeights, random);
+        }
+        byte[] plain = new byte[tokens.ids.length];
+        for (int i = 0; i < plain.length; i++) {
+            plain[i] = (byte) key[tokens.ids[i]];
+        }
+
+        double[] expected = letterWeights();
+        int letters = expected.length;
+        double weightTotal = Arrays.stream(expected).sum();
+        for (int c = 0; c < letters; c++) {
+            expected[c] *= plain.length / weightTotal;
+        }
+        int[] letterCounts = new int[letters];
+        for (byte p : plain) {
+            letterCounts[p]++;
+        }
+        double penalty = 0.0;
+        for (int c = 0; c < letters; c++) {
+            penalty += deviation(letterCounts[c], expected[c]);
+        }
+
+        double score = ngramScorer.scoreWindows(plain, allWindows) - frequencyWeight * penalty;
+        double bestScore = score;
+        int[] bestKey = key.clone();
+
+        double lettersPerSymbol = (double) plain.length / symbolCount;
+        double temperature = startTemperature * lettersPerSymbol;
+        double cooling = Math.pow(endTemperature / startTemperature, 1.0 / stepsPerRestart);
+        for (int step = 0; step < stepsPerRestart; step++) {
+            int symbol = random.nextInt(symbolCount);
+            int oldLetter = key[symbol];
+            int newLetter = random.nextInt(letters - 1);
+            if (newLetter >= oldLetter) {
+                newLetter++;
+            }
+
+            double before = ngramScorer.scoreWindows(plain, windows[symbol]);
+            assign(plain, positions[symbol], newLetter);
+            int moved = positions[symbol].length;
+            double penaltyDelta = deviation(letterCounts[oldLetter] - moved, expected[oldLetter])
+                    + deviation(letterCounts[newLetter] + moved, expected[newLetter])
+                    - deviation(letterCounts[oldLetter], expected[oldLetter])
+                    - deviation(letterCounts[newLetter], expected[newLetter]);
+            double delta = ngramScorer.scoreWindows(plain, windows[symbol]) - before - frequencyWeight * penaltyDelta;
+
+            if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                key[symbol] = newLetter;
+                letterCounts[oldLetter] -= moved;
+                letterCounts[newLetter] += moved;
+                score += delta;
+                if (score > bestScore) {
+                    bestScore = score;
+                    System.arraycopy(key, 0, bestKey, 0, symbolCount);
+                }
+            } else {
+                assign(plain, positions[symbol], oldLetter);
+            }
+            temperature *= cooling;
+        }
+
+        // Recompute the score exactly rather than trusting the accumulated deltas; restarts are
+        // compared on the same objective they annealed, so a degenerate E/T-heavy key cannot win
+        Arrays.fill(letterCounts, 0);
+        for (int i = 0; i < plain.length; i++) {
+            plain[i] = (byte) bestKey[tokens.ids[i]];
+            letterCounts[plain[i]]++;
+        }
+        double finalPenalty = 0.0;
+        for (int c = 0; c < letters; c++) {
+            finalPenalty += deviation(letterCounts[c], expected[c]);
+        }
+        double ngramScore = ngramScorer.scoreWindows(plain, allWindows);
+        double finalScore = ngramScore - frequencyWeight * finalPenalty;
+        Alphabet alphabet = ngramScorer.alphabet();
+        Result result = new Result(bestKey, tokens.symbols, finalScore, ngramScore,
+                alphabet.decode(plain, 0, plain.length), alphabet);
+        monitor.candidates(stepsPerRestart);
+        monitor.improved(finalScore, () -> result.decryption);
+        return result;
+    }
+
+    // Drops the n-gram lengths below minOrder, or below the highest loaded order if that is lower
+    private int[][] scoredOrders(int[][] starts) {
+        int[] orders = ngramScorer.orders();
+        int lowest = Math.min(minOrder, orders[orders.length - 1]);
+        for (int ngramLength = 0; ngramLength < lowest; ngramLength++) {
+            starts[ngramLength] = null;
+        }
+        return starts;
+    }
+
+    // Chi-squared term of one letter
+    private static double deviation(int count, double expected) {
+        double difference = count - expected;
+        return difference * difference / expected;
+    }
+
+    private static void assign(byte[] plain, int[] positions, int letter) {
+        for (int position : positions) {
+            plain[position] = (byte) letter;
+        }
+    }
+
+    // Letter frequencies of the model's language from the monogram table, uniform if there is none
+    private double[] letterWeights() {
+        double[] weights = new double[ngramScorer.alphabet().size()];
+        double[] monograms = ngramScorer.table(1);
+        for (int c = 0; c < weights.length; c++) {
+            weights[c] = monograms == null ? 1.0 : Math.pow(10, monograms[c]);
+        }
+        return weights;
+    }
+
+    private static int sampleLetter(double[] weights, Random random) {
+        double total = 0.0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double target = random.nextDouble() * total;
+        for (int c = 0; c < weights.length - 1; c++) {
+            target -= weights[c];
+            if (target < 0) {
+                return c;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    public static void main(String[] args) {
+        SymbolTokenizer.Mode mode = SymbolTokenizer.Mode.WHITESPACE;
+        int width = 2;
+        HomophonicSolver solver;
+        try {
+            solver = new HomophonicSolver(SubstitutionWithKeywordSolver.loadNGramScorer());
+        } catch (IOException e) {
+            System.err.println("Error loading N-gram scorer: " + e.getMessage());
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--mode" -> mode = SymbolTokenizer.parseMode(args[++i]);
+                case "--width" -> width = Integer.parseInt(args[++i]);
+                case "--restarts" -> solver.restarts = Integer.parseInt(args[++i]);
+                case "--steps" -> solver.stepsPerRestart = Integer.parseInt(args[++i]);
+                case "--min-order" -> solver.minOrder = Integer.parseInt(args[++i]);
+                case "--frequency-weight" -> solver.frequencyWeight = Double.parseDouble(args[++i]);
+                case "--start-temperature" -> solver.startTemperature = Double.parseDouble(args[++i]);
+                case "--end-temperature" -> solver.endTemperature = Double.parseDouble(args[++i]);
+                case "--seed" -> solver.setSeed(Long.parseLong(args[++i]));
+                case "--threads" -> solver.threads = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        SymbolTokenizer.Tokens tokens = new SymbolTokenizer(mode, width).tokenize(getRawInput());
+        System.out.println("Read " + tokens.ids.length + " symbols, " + tokens.symbolCount() + " distinct");
+        Result result = solver.solve(tokens);
+
+        System.out.println("Score: " + result.score + " (n-gram " + result.ngramScore + ")");
+        System.out.println("Key:\n" + result.describeKey());
+        System.out.println("Decrypted text: " + result.decryption);
+    }
+}
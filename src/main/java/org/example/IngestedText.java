@@ -0,0 +1,267 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Ciphertext read straight into symbol codes of an alphabet (0 = A ... 25 = Z for A-Z)
+ * without going through strings. Files are memory-mapped and normalised in parallel: every
+ * chunk first counts its letters, then writes its codes at the offset the counts before it
+ * give. The alphabet's ASCII symbols are kept in either case, everything else is skipped;
+ * bytes of multi-byte UTF-8 characters are never ASCII, so chunks may split them. Alphabets
+ * with symbols beyond ASCII are read from a string with {@link #of(String, Alphabet, boolean)}.
+ *
+ * <p>With the layout kept, the original bytes stay mapped (or the decoded string is kept) and
+ * {@link #reformat} writes a decryption back into them: spaces, punctuation and line breaks
+ * stay where they were and lower-case letters stay lower case.
+ */
+public class IngestedText {
+
+    private static final int CHUNK_BYTES = 8 << 20;
+    // Largest mapping per region, mappings are limited to 2 GB
+    private static final long REGION_BYTES = 1L << 30;
+
+    /**
+     * A byte range of one region.
+     */
+    private static class Chunk {
+        final ByteBuffer region;
+        final int start;
+        final int end;
+        int letters;
+        int offset;
+
+        Chunk(ByteBuffer region, int start, int end) {
+            this.region = region;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    final byte[] codes;
+    final Alphabet alphabet;
+    // Original bytes, or the original string for alphabets beyond ASCII; both null unless the layout is kept
+    private final List<ByteBuffer> layout;
+    private final String textLayout;
+
+    private IngestedText(byte[] codes, Alphabet alphabet, List<ByteBuffer> layout, String textLayout) {
+        this.codes = codes;
+        this.alphabet = alphabet;
+        this.layout = layout;
+        this.textLayout = textLayout;
+    }
+
+    /**
+     * Memory-maps a file and normalises it with the given number of threads.
+     *
+     * @param keepLayout keep the file mapped for {@link #reformat}
+     */
+    public static IngestedText map(Path file, boolean keepLayout, int threads) throws IOException {
+        return map(file, Alphabet.LATIN_26, keepLayout, threads);
+    }
+
+    /**
+     * Memory-maps a file and normalises it to the codes of an ASCII-only alphabet.
+     *
+     * @param keepLayout keep the file mapped for {@link #reformat}
+     */
+    public static IngestedText map(Path file, Alphabet alphabet, boolean keepLayout, int threads) throws IOException {
+        requireAscii(alphabet);
+        List<ByteBuffer> regions = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += REGION_BYTES) {
+                regions.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION_BYTES, size - position)));
+            }
+        }
+        return normalise(regions, alphabet, keepLayout, threads);
+    }
+
+    // Text already in memory, e.g. read from stdin
+    public static IngestedText of(byte[] bytes, boolean keepLayout, int threads) {
+        return of(bytes, Alphabet.LATIN_26, keepLayout, threads);
+    }
+
+    public static IngestedText of(byte[] bytes, Alphabet alphabet, boolean keepLayout, int threads) {
+        requireAscii(alphabet);
+        return normalise(List.of(ByteBuffer.wrap(bytes)), alphabet, keepLayout, threads);
+    }
+
+    // Decoded text in any alphabet, read in one pass without the layout
+    public static IngestedText of(String text, Alphabet alphabet) {
+        return of(text, alphabet, false);
+    }
+
+    /**
+     * Decoded text in any alphabet, e.g. Czech read as UTF-8.
+     *
+     * @param keepLayout keep the string for {@link #reformat}
+     */
+    public static IngestedText of(String text, Alphabet alphabet, boolean keepLayout) {
+        return new IngestedText(alphabet.encode(text), alphabet, null, keepLayout ? text : null);
+    }
+
+    private static void requireAscii(Alphabet alphabet) {
+        if (!alphabet.isAscii()) {
+            throw new IllegalArgumentException("The " + alphabet + " alphabet is not read byte by byte.");
+        }
+    }
+
+    private static IngestedText normalise(List<ByteBuffer> regions, Alphabet alphabet, boolean keepLayout, int threads) {
+        byte[] table = alphabet.byteCodes();
+        List<Chunk> chunks = new ArrayList<>();
+        for (ByteBuffer region : regions) {
+            for (int start = 0; start < region.limit(); start += CHUNK_BYTES) {
+                chunks.add(new Chunk(region, start, Math.min(region.limit(), start + CHUNK_BYTES)));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, chunks.size())));
+        try {
+            List<Callable<Void>> counting = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                counting.add(() -> {
+                    chunk.letters = countLetters(chunk, table);
+                    return null;
+                });
+            }
+            runAll(executor, counting);
+
+            long total = 0;
+            for (Chunk chunk : chunks) {
+                chunk.offset = (int) total;
+                total += chunk.letters;
+            }
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Text has " + total + " letters, more than fit in one array.");
+            }
+
+            byte[] codes = new byte[(int) total];
+            List<Callable<Void>> writing = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                writing.add(() -> {
+                    writeCodes(chunk, table, codes);
+                    return null;
+                });
+            }
+            runAll(executor, writing);
+            return new IngestedText(codes, alphabet, keepLayout ? regions : null, null);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void runAll(ExecutorService executor, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ingestion interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ingestion failed", e.getCause());
+        }
+    }
+
+    private static int countLetters(Chunk chunk, byte[] table) {
+        int letters = 0;
+        for (int i = chunk.start; i < chunk.end; i++) {
+            if (table[chunk.region.get(i) & 0xFF] >= 0) {
+                letters++;
+            }
+        }
+        return letters;
+    }
+
+    private static void writeCodes(Chunk chunk, byte[] table, byte[] codes) {
+        int position = chunk.offset;
+        for (int i = chunk.start; i < chunk.end; i++) {
+            byte code = table[chunk.region.get(i) & 0xFF];
+            if (code >= 0) {
+                codes[position++] = code;
+            }
+        }
+    }
+
+    public int length() {
+        return codes.length;
+    }
+
+    public boolean hasLayout() {
+        return layout != null || textLayout != null;
+    }
+
+    public SegmentedText toSegmentedText() {
+        return new SegmentedText(codes, new int[]{0, codes.length}, alphabet);
+    }
+
+    // The symbols of the alphabet as a string
+    public String letters() {
+        return alphabet.decode(codes, 0, codes.length);
+    }
+
+    /**
+     * Writes letter codes of the same length as this text (e.g. its decryption) in the original
+     * layout: every letter of the input is replaced by the next code, in the input's case.
+     */
+    public void reformat(byte[] plain, OutputStream out) throws IOException {
+        if (!hasLayout()) {
+            throw new IllegalStateException("The layout was not kept.");
+        }
+        if (plain.length != codes.length) {
+            throw new IllegalArgumentException("Expected " + codes.length + " letters, got " + plain.length + ".");
+        }
+        if (textLayout != null) {
+            out.write(reformatText(plain).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        byte[] table = alphabet.byteCodes();
+        byte[] buffer = new byte[64 << 10];
+        int filled = 0;
+        int letter = 0;
+        for (ByteBuffer region : layout) {
+            for (int i = 0; i < region.limit(); i++) {
+                byte b = region.get(i);
+                if (table[b & 0xFF] >= 0) {
+                    char symbol = alphabet.symbol(plain[letter++]);
+                    b = (byte) (Character.isLowerCase(b) ? Character.toLowerCase(symbol) : symbol);
+                }
+                buffer[filled++] = b;
+                if (filled == buffer.length) {
+                    out.write(buffer, 0, filled);
+                    filled = 0;
+                }
+            }
+        }
+        out.write(buffer, 0, filled);
+    }
+
+    // Same as the byte-level loop, character by character over the kept string
+    private String reformatText(byte[] plain) {
+        StringBuilder sb = new StringBuilder(textLayout.length());
+        int letter = 0;
+        for (int i = 0; i < textLayout.length(); i++) {
+            char c = textLayout.charAt(i);
+            if (alphabet.code(c) >= 0) {
+                char symbol = alphabet.symbol(plain[letter++]);
+                c = Character.isLowerCase(c) ? Character.toLowerCase(symbol) : symbol;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    // Symbols of the alphabet (case-insensitive, anything else skipped) in the original layout
+    public String reformat(String plaintext) throws IOException {
+        byte[] plain = alphabet.encode(plaintext);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reformat(plain, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
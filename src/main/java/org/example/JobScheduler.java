@@ -0,0 +1,466 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Watches an input directory for ciphertext files and solves them as a stream of jobs.
+ * Every file is routed by {@link CipherRouter}; each selected solver becomes a job with a
+ * cost estimated from the text length, the solver and its budget. Waiting jobs are started
+ * cheapest first, so quick affine or Vigenère jobs are not stuck behind a long keyword
+ * search.
+ *
+ * <p>Long searches are time-sliced cooperatively: at their iteration boundaries
+ * ({@link SearchControl}) a job whose slice has run out hands its worker to a cheaper
+ * waiting job and waits for its turn again, ranked by its remaining cost. At most
+ * {@code workers} jobs run at once, and a semaphore per solver type caps how many of them
+ * are of that type. Queue depth and wait times are printed periodically.
+ */
+public class JobScheduler {
+
+    public enum SolverType {
+        AFFINE,
+        SUBSTITUTION,
+        VIGENERE,
+        PLAYFAIR
+    }
+
+    // Key pairs the affine solver tries, see AffineCipherSolver.solve
+    private static final int AFFINE_EVALUATIONS = 45 * 45;
+
+    /**
+     * One solver run on one ciphertext. Its thread calls {@link #iterationBoundary}, which
+     * blocks while the job is paused.
+     */
+    class Job implements SearchControl {
+        final String name;
+        final SolverType type;
+        final String ciphertext;
+        final double estimatedCost;
+        final long sequence;
+        double remainingCost;
+        // When the job last started waiting, and the total time it waited
+        long waitingSince;
+        long waitedNanos;
+        long sliceStart;
+        boolean started;
+        boolean granted;
+
+        Job(String name, SolverType type, String ciphertext, double estimatedCost, long sequence) {
+            this.name = name;
+            this.type = type;
+            this.ciphertext = ciphertext;
+            this.estimatedCost = estimatedCost;
+            this.remainingCost = estimatedCost;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void iterationBoundary(double fractionDone) {
+            if (System.nanoTime() - sliceStart < sliceNanos) {
+                return;
+            }
+            synchronized (JobScheduler.this) {
+                remainingCost = estimatedCost * Math.max(0.0, 1.0 - fractionDone);
+                if (!hasRunnableWaiting(type)) {
+                    sliceStart = System.nanoTime();
+                    return;
+                }
+                release(this);
+                granted = false;
+                enqueue(this);
+                dispatch();
+                if (!granted) {
+                    preemptions++;
+                }
+                while (!granted) {
+                    try {
+                        JobScheduler.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Job interrupted", e);
+                    }
+                }
+            }
+            sliceStart = System.nanoTime();
+        }
+    }
+
+    private final NGramScorer ngramScorer;
+    private final CipherRouter router;
+    private final Path outputDir;
+    private final int workers;
+    private final long sliceNanos;
+    private final Map<SolverType, Semaphore> typePermits = new EnumMap<>(SolverType.class);
+    private final ExecutorService jobThreads = Executors.newCachedThreadPool();
+
+    // Budgets of the solvers, used for the cost estimates as well
+    private int maxKeywordLength = 4;
+    private int numIterations = 1000000;
+    private int topResultsLimit = 10;
+    private int replicas = 8;
+    private int vigenereRounds = 50;
+    private int vigenereSteps = 500;
+    private int playfairRounds = 200;
+    private int playfairSteps = 2000;
+
+    // Guarded by this
+    private final List<Job> waiting = new ArrayList<>();
+    private int running;
+    private long nextSequence;
+    private long completed;
+    private long preemptions;
+    private final List<Long> waitTimes = new ArrayList<>();
+
+    /**
+     * @param workers    jobs running at once
+     * @param typeCaps   jobs of a solver type running at once; types not listed may use every worker
+     * @param sliceMillis time a job runs before it yields to cheaper waiting jobs
+     */
+    public JobScheduler(NGramScorer ngramScorer, CipherRouter router, Path outputDir, int workers,
+                        Map<SolverType, Integer> typeCaps, long sliceMillis) {
+        this.ngramScorer = ngramScorer;
+        this.router = router;
+        this.outputDir = outputDir;
+        this.workers = workers;
+        this.sliceNanos = sliceMillis * 1_000_000L;
+        for (SolverType type : SolverType.values()) {
+            typePermits.put(type, new Semaphore(typeCaps.getOrDefault(type, workers)));
+        }
+    }
+
+    public void setSubstitutionBudget(int maxKeywordLength, int numIterations, int topResultsLimit) {
+        this.maxKeywordLength = maxKeywordLength;
+        this.numIterations = numIterations;
+        this.topResultsLimit = topResultsLimit;
+    }
+
+    /**
+     * Estimated cost of a job in letter evaluations: candidate keys scored times text length.
+     */
+    public double estimateCost(SolverType type, int length) {
+        double evaluations = switch (type) {
+            case AFFINE -> AFFINE_EVALUATIONS;
+            case SUBSTITUTION -> {
+                double sum = 0;
+                for (int k = 1; k <= maxKeywordLength; k++) {
+                    sum += numIterations / k; // iterations per keyword length, see SubstitutionWithKeywordSolver
+                }
+                yield sum;
+            }
+            case VIGENERE -> (double) replicas * vigenereRounds * vigenereSteps;
+            case PLAYFAIR -> (double) replicas * playfairRounds * playfairSteps;
+        };
+        return evaluations * length;
+    }
+
+    /**
+     * Routes a ciphertext and queues a job for every solver of the selected families.
+     */
+    public void submit(String name, String ciphertext) {
+        List<SolverType> types = new ArrayList<>();
+        for (CipherClassifier.Classification classification : router.route(ciphertext)) {
+            switch (classification.family) {
+                case MONOALPHABETIC -> {
+                    types.add(SolverType.AFFINE);
+                    types.add(SolverType.SUBSTITUTION);
+                }
+                case VIGENERE -> types.add(SolverType.VIGENERE);
+                case PLAYFAIR -> types.add(SolverType.PLAYFAIR);
+            }
+        }
+        synchronized (this) {
+            for (SolverType type : types) {
+                Job job = new Job(name, type, ciphertext, estimateCost(type, ciphertext.length()), nextSequence++);
+                System.out.printf("Queued %s %s, estimated cost %.3g%n", name, type, job.estimatedCost);
+                enqueue(job);
+            }
+            dispatch();
+        }
+    }
+
+    private void enqueue(Job job) {
+        job.waitingSince = System.nanoTime();
+        waiting.add(job);
+    }
+
+    // Start or resume the cheapest waiting jobs while workers and type permits are free
+    private synchronized void dispatch() {
+        waiting.sort(Comparator.comparingDouble((Job j) -> j.remainingCost).thenComparingLong(j -> j.sequence));
+        Iterator<Job> iterator = waiting.iterator();
+        while (running < workers && iterator.hasNext()) {
+            Job job = iterator.next();
+            if (!typePermits.get(job.type).tryAcquire()) {
+                continue;
+            }
+            iterator.remove();
+            running++;
+            job.waitedNanos += System.nanoTime() - job.waitingSince;
+            if (job.started) {
+                job.granted = true;
+                notifyAll();
+            } else {
+                job.started = true;
+                jobThreads.submit(() -> runJob(job));
+            }
+        }
+    }
+
+    private synchronized void release(Job job) {
+        running--;
+        typePermits.get(job.type).release();
+    }
+
+    // Whether a waiting job could take the worker the given type gives up
+    private synchronized boolean hasRunnableWaiting(SolverType type) {
+        for (Job job : waiting) {
+            if (job.type == type || typePermits.get(job.type).availablePermits() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runJob(Job job) {
+        job.sliceStart = System.nanoTime();
+        try {
+            writeResult(job, solve(job));
+        } catch (RuntimeException | IOException e) {
+            System.err.println("Error in job " + job.name + " " + job.type + ": " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                release(job);
+                completed++;
+                waitTimes.add(job.waitedNanos);
+                dispatch();
+            }
+            System.out.printf("Finished %s %s, waited %.1f s%n", job.name, job.type, job.waitedNanos / 1e9);
+        }
+    }
+
+    private String solve(Job job) {
+        StringWriter result = new StringWriter();
+        PrintWriter out = new PrintWriter(result);
+        switch (job.type) {
+            case AFFINE -> {
+                for (AffineCipherSolver.Result r : AffineCipherSolver.solve(job.ciphertext, ngramScorer, 5)) {
+                    out.println("A=" + r.A + " B=" + r.B + " | Score: " + r.score);
+                    out.println("Decrypted text: " + r.plaintext);
+                }
+            }
+            case SUBSTITUTION -> {
+                SubstitutionWithKeywordSolver solver = new SubstitutionWithKeywordSolver(ngramScorer);
+                solver.setControl(job);
+                for (SubstitutionWithKeywordSolver.Result r
+                        : solver.solve(job.ciphertext, maxKeywordLength, numIterations, topResultsLimit)) {
+                    out.println("Keyword: " + r.keyword + " | Score: " + r.score);
+                    out.println("Decrypted text: " + r.decryption);
+                }
+            }
+            case VIGENERE -> {
+                VigenereSolver solver = new VigenereSolver(ngramScorer);
+                solver.setBudget(replicas, vigenereRounds, vigenereSteps);
+                solver.setControl(job);
+                SegmentedText text = SegmentedText.of(job.ciphertext, ngramScorer.alphabet());
+                VigenereSolver.Result r = solver.solve(text, VigenereSolver.estimatePeriod(text));
+                out.println("Key: " + r.key + " | Score: " + r.score);
+                out.println("Decrypted text: " + r.decryption);
+            }
+            case PLAYFAIR -> {
+                PlayfairSolver solver = new PlayfairSolver(ngramScorer);
+                solver.setBudget(replicas, playfairRounds, playfairSteps);
+                solver.setControl(job);
+                PlayfairSolver.Result r = solver.solve(job.ciphertext);
+                out.println("Square: " + r.square + " | Score: " + r.score);
+                out.println("Decrypted text: " + r.decryption);
+            }
+        }
+        out.flush();
+        return result.toString();
+    }
+
+    private void writeResult(Job job, String result) throws IOException {
+        Path file = outputDir.resolve(job.name + "." + job.type.name().toLowerCase(Locale.ROOT) + ".txt");
+        Files.writeString(file, result, StandardCharsets.UTF_8);
+    }
+
+    public synchronized int getQueueDepth() {
+        return waiting.size();
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    // Waiting jobs per solver type
+    public synchronized Map<SolverType, Integer> getQueueDepthByType() {
+        Map<SolverType, Integer> depth = new EnumMap<>(SolverType.class);
+        for (Job job : waiting) {
+            depth.merge(job.type, 1, Integer::sum);
+        }
+        return depth;
+    }
+
+    /**
+     * Total wait of the finished jobs at the given quantile, including the time they were
+     * paused for other jobs.
+     *
+     * @param quantile 0 to 1, e.g. 0.95
+     * @return the wait in seconds, 0 if no job has finished
+     */
+    public synchronized double getWaitSeconds(double quantile) {
+        if (waitTimes.isEmpty()) {
+            return 0.0;
+        }
+        List<Long> sorted = new ArrayList<>(waitTimes);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index))) / 1e9;
+    }
+
+    // Longest current wait among the queued jobs in seconds
+    public synchronized double getOldestWaitSeconds() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (Job job : waiting) {
+            oldest = Math.max(oldest, now - job.waitingSince);
+        }
+        return oldest / 1e9;
+    }
+
+    public synchronized String status() {
+        return String.format(Locale.ROOT,
+                "queue %d %s | running %d/%d | done %d | paused %d times | wait p50 %.1f s, p95 %.1f s, max %.1f s"
+                        + " | oldest queued %.1f s",
+                waiting.size(), getQueueDepthByType(), running, workers, completed, preemptions,
+                getWaitSeconds(0.5), getWaitSeconds(0.95), getWaitSeconds(1.0), getOldestWaitSeconds());
+    }
+
+    /**
+     * Polls the input directory and submits every new file; read files are moved to
+     * {@code processed/} below it, files that cannot be read (e.g. not UTF-8) to {@code failed/}.
+     * A file modified within the last poll interval may still be being written and is left
+     * for the next poll.
+     *
+     * @param once stop when the directory is empty and every job has finished
+     */
+    public void watch(Path inputDir, long pollMillis, long statusMillis, boolean once) throws IOException {
+        Path processed = inputDir.resolve("processed");
+        Path failed = inputDir.resolve("failed");
+        Files.createDirectories(processed);
+        Files.createDirectories(failed);
+        Files.createDirectories(outputDir);
+        long lastStatus = System.currentTimeMillis();
+        try {
+            while (true) {
+                List<Path> files;
+                try (Stream<Path> list = Files.list(inputDir)) {
+                    files = list.filter(Files::isRegularFile).sorted().toList();
+                }
+                for (Path file : files) {
+                    String ciphertext;
+                    try {
+                        if (Files.getLastModifiedTime(file).toMillis() > System.currentTimeMillis() - pollMillis) {
+                            continue;
+                        }
+                        ciphertext = Alphabet.selected().normalise(Files.readString(file, StandardCharsets.UTF_8));
+                        Files.move(file, processed.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                    } catch (IOException e) {
+                        System.err.println("Error reading " + file.getFileName() + ", moving it to " + failed + ": " + e);
+                        moveQuietly(file, failed);
+                        continue;
+                    }
+                    if (ciphertext.isEmpty()) {
+                        System.err.println("Skipping " + file.getFileName() + ": no letters");
+                        continue;
+                    }
+                    submit(file.getFileName().toString(), ciphertext);
+                }
+
+                if (System.currentTimeMillis() - lastStatus >= statusMillis) {
+                    System.out.println(status());
+                    lastStatus = System.currentTimeMillis();
+                }
+                synchronized (this) {
+                    if (once && files.isEmpty() && waiting.isEmpty() && running == 0) {
+                        break;
+                    }
+                }
+                Thread.sleep(pollMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            jobThreads.shutdown();
+        }
+        System.out.println(status());
+    }
+
+    // A file that cannot be moved either is left in place and reported again on the next poll
+    private static void moveQuietly(Path file, Path dir) {
+        try {
+            Files.move(file, dir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Error moving " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        Path inputDir = Paths.get("inbox");
+        Path outputDir = Paths.get("results");
+        int workers = Runtime.getRuntime().availableProcessors();
+        long sliceMillis = 2000;
+        long pollMillis = 500;
+        long statusSeconds = 10;
+        boolean once = false;
+        int maxKeywordLength = 4;
+        int numIterations = 1000000;
+        double minRelativeConfidence = 0.5;
+        String logFile = null;
+        Map<SolverType, Integer> typeCaps = new EnumMap<>(SolverType.class);
+        typeCaps.put(SolverType.SUBSTITUTION, 1);
+        typeCaps.put(SolverType.PLAYFAIR, 1);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--in" -> inputDir = Paths.get(args[++i]);
+                case "--out" -> outputDir = Paths.get(args[++i]);
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--cap" -> {
+                    String[] parts = args[++i].split("=");
+                    typeCaps.put(SolverType.valueOf(parts[0].toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1]));
+                }
+                case "--slice-ms" -> sliceMillis = Long.parseLong(args[++i]);
+                case "--poll-ms" -> pollMillis = Long.parseLong(args[++i]);
+                case "--status-interval" -> statusSeconds = Long.parseLong(args[++i]);
+                case "--once" -> once = true;
+                case "--max-keyword-length" -> maxKeywordLength = Integer.parseInt(args[++i]);
+                case "--iterations" -> numIterations = Integer.parseInt(args[++i]);
+                case "--min-confidence" -> minRelativeConfidence = Double.parseDouble(args[++i]);
+                case "--log" -> logFile = args[++i];
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        try {
+            NGramScorer ngramScorer = SubstitutionWithKeywordSolver.loadNGramScorer();
+            CipherRouter router = new CipherRouter(new CipherClassifier(), minRelativeConfidence, logFile);
+            JobScheduler scheduler = new JobScheduler(ngramScorer, router, outputDir, workers, typeCaps, sliceMillis);
+            scheduler.setSubstitutionBudget(maxKeywordLength, numIterations, 10);
+            System.out.println("Watching " + inputDir + ", results in " + outputDir);
+            scheduler.watch(inputDir, pollMillis, statusSeconds * 1000, once);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
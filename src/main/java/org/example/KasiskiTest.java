@@ -7,12 +7,24 @@ import static org.example.Utils.getInputAndProcess;
 public class KasiskiTest {
 
     public static void main(String[] args) {
+        int minLength = 2;
+        int maxLength = 6;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--min-length" -> minLength = Integer.parseInt(args[++i]);
+                case "--max-length" -> maxLength = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
         String ciphertext = getInputAndProcess();
         // Map to store the occurrence count of each denominator
         Map<Integer, Integer> denominatorCountMap = new HashMap<>();
 
-        // Process n-grams of lengths 2 to 6
-        for (int ngramLength = 2; ngramLength <= 6; ngramLength++) {
+        // Process n-grams of lengths minLength to maxLength
+        for (int ngramLength = minLength; ngramLength <= maxLength; ngramLength++) {
             System.out.println("\n--- Processing " + ngramLength + "-grams ---");
 
             // Step 2: Find repeating n-grams
@@ -0,0 +1,199 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Single entry point for all tools: the first argument selects the tool, the remaining
+ * arguments are passed on as its flags. Used by bin/ksb, which runs it with a class-data-sharing
+ * archive; the warm-up command is what that archive is recorded from. {@code --input <file>}
+ * before the command makes the tool read its ciphertext from a memory-mapped file instead of
+ * stdin, and {@code --alphabet <name>} selects the alphabet of the ciphertext and the models
+ * (A-Z by default).
+ */
+public class Launcher {
+
+    private static class Command {
+        final String description;
+        final Consumer<String[]> main;
+
+        Command(String description, Consumer<String[]> main) {
+            this.description = description;
+            this.main = main;
+        }
+    }
+
+    private static final Map<String, Command> COMMANDS = new LinkedHashMap<>();
+
+    static {
+        COMMANDS.put("affine", new Command("solve an affine cipher [--messages] [--rescore] [--top n]",
+                AffineCipherSolver::main));
+        COMMANDS.put("substitution", new Command("solve a keyword substitution [--max-keyword-length n] "
+                + "[--iterations n] [--top n] [--tempering] [--checkpoint f] [--resume] [--seed n] ...",
+                SubstitutionWithKeywordSolver::main));
+        COMMANDS.put("playfair", new Command("encrypt or decrypt with a known keyword --keyword k [--encrypt] [--example]",
+                PlayfairCipher::main));
+        COMMANDS.put("playfair-solve", new Command("search for a Playfair square [--messages] [--replicas n] "
+                + "[--rounds n] [--steps n] [--seed n]", PlayfairSolver::main));
+        COMMANDS.put("vigenere-solve", new Command("search for a Vigenere key [--period n] [--messages] [--replicas n] "
+                + "[--rounds n] [--steps n] [--seed n]", VigenereSolver::main));
+        COMMANDS.put("autokey-solve", new Command("search for an autokey primer, or a running-key offset with "
+                + "--running-key <key text file> [--max-primer-length n] [--restarts n] [--messages] [--top n]",
+                AutokeySolver::main));
+        COMMANDS.put("transposition-solve", new Command("search for a columnar transposition order [--min-width n] "
+                + "[--max-width n] [--restarts n] [--steps n] [--seed n] [--top n]", ColumnarTranspositionSolver::main));
+        COMMANDS.put("homophonic-solve", new Command("search for a homophonic substitution key over numeric or other "
+                + "symbols [--mode whitespace|fixed|char] [--width n] [--restarts n] [--steps n] [--seed n]",
+                HomophonicSolver::main));
+        COMMANDS.put("vigenere-table", new Command("print the shifted alphabets of a key [--key k]",
+                VigenereVisualiser::main));
+        COMMANDS.put("kasiski", new Command("Kasiski examination [--min-length n] [--max-length n]",
+                KasiskiTest::main));
+        COMMANDS.put("friedman", new Command("Friedman estimate of the key length", FriedmannTest::main));
+        COMMANDS.put("columns-ic", new Command("IC of the columns for one key length [--keyword-length n]",
+                TextDividerICCalculator::main));
+        COMMANDS.put("route", new Command("classify a ciphertext and run the likely solvers [--min-confidence x] "
+                + "[--log f] [--no-log]", CipherRouter::main));
+        COMMANDS.put("schedule", new Command("watch a directory and solve every file, cheapest jobs first [--in d] "
+                + "[--out d] [--workers n] [--cap type=n] [--slice-ms n] [--once] ...", JobScheduler::main));
+        COMMANDS.put("shard-coordinator", new Command("distribute the keyword search [--port n] [--workers n] "
+                + "[--leases n] [--max-keyword-length n] [--iterations n] ...",
+                ShardCoordinator::main));
+        COMMANDS.put("shard-worker", new Command("work for a shard coordinator <host> <port>", ShardWorker::main));
+        COMMANDS.put("corpus", new Command("generate a known-key corpus [--seed n] [--lengths a,b] [--samples n] ...",
+                CorpusGenerator::main));
+        COMMANDS.put("benchmark", new Command("measure solve rates on a generated corpus [--seed n] [--samples n] ...",
+                SolveRateBenchmark::main));
+        COMMANDS.put("train", new Command("build an n-gram model pack [--out-dir d] [--prefix p] [--min-order n] "
+                + "[--min-count n] <corpus>...", NGramTrainer::main));
+        COMMANDS.put("reformat", new Command("put a decryption back into the layout of its ciphertext file "
+                + "--layout <ciphertext file> [--plaintext <file>] [--out <file>]", Launcher::reformat));
+        COMMANDS.put("warm-up", new Command("load every tool and the scorer once, e.g. to record a CDS archive",
+                args -> {
+                    if (!warmUp()) {
+                        System.exit(1); // bin/ksb must not record an archive without the scorer
+                    }
+                }));
+    }
+
+    public static void main(String[] args) {
+        while (args.length >= 2 && (args[0].equals("--input") || args[0].equals("--alphabet"))) {
+            if (args[0].equals("--alphabet")) {
+                try {
+                    System.setProperty(Alphabet.PROPERTY, Alphabet.forName(args[1]).name());
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    return;
+                }
+            } else {
+                System.setProperty(Utils.INPUT_PROPERTY, args[1]);
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("help")) {
+            printUsage();
+            return;
+        }
+        Command command = COMMANDS.get(args[0]);
+        if (command == null) {
+            System.err.println("Unknown command: " + args[0]);
+            printUsage();
+            return;
+        }
+        command.main.accept(Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: ksb [--input <ciphertext file>] [--alphabet <name>] <command> [options]\n\nCommands:");
+        for (Map.Entry<String, Command> entry : COMMANDS.entrySet()) {
+            System.out.printf("  %-18s %s%n", entry.getKey(), entry.getValue().description);
+        }
+    }
+
+    // Replace the letters of a ciphertext file by the plaintext letters, keeping everything else
+    private static void reformat(String[] args) {
+        String layoutFile = null;
+        String plaintextFile = null;
+        String outFile = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--layout" -> layoutFile = args[++i];
+                case "--plaintext" -> plaintextFile = args[++i];
+                case "--out" -> outFile = args[++i];
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+        if (layoutFile == null) {
+            System.err.println("Usage: reformat --layout <ciphertext file> [--plaintext <file>] [--out <file>]");
+            return;
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            Alphabet alphabet = Alphabet.selected();
+            IngestedText layout;
+            IngestedText plaintext;
+            if (alphabet.isAscii()) {
+                layout = IngestedText.map(Paths.get(layoutFile), alphabet, true, threads);
+                plaintext = plaintextFile != null
+                        ? IngestedText.map(Paths.get(plaintextFile), alphabet, false, threads)
+                        : IngestedText.of(System.in.readAllBytes(), alphabet, false, threads);
+            } else {
+                // Letters beyond ASCII, e.g. Czech: both files are decoded as UTF-8 in one pass
+                layout = IngestedText.of(Files.readString(Paths.get(layoutFile), StandardCharsets.UTF_8), alphabet, true);
+                plaintext = IngestedText.of(plaintextFile != null
+                        ? Files.readString(Paths.get(plaintextFile), StandardCharsets.UTF_8)
+                        : new String(System.in.readAllBytes(), StandardCharsets.UTF_8), alphabet);
+            }
+            if (outFile == null) {
+                layout.reformat(plaintext.codes, System.out);
+                System.out.flush();
+            } else {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(outFile)))) {
+                    layout.reformat(plaintext.codes, out);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reformatting: " + e.getMessage());
+        }
+    }
+
+    // Initialise the classes of every tool and fill the model cache; false if anything is missing
+    private static boolean warmUp() {
+        boolean complete = true;
+        String[] classes = {
+                "AffineCipherSolver", "SubstitutionWithKeywordSolver", "PlayfairCipher", "PlayfairSolver",
+                "VigenereSolver", "VigenereCipher", "AutokeySolver", "AutokeyCipher",
+                "ColumnarTranspositionSolver", "ColumnarTranspositionCipher", "HomophonicSolver", "HomophonicCipher",
+                "SymbolTokenizer", "IngestedText", "VigenereVisualiser", "KasiskiTest", "FriedmannTest",
+                "TextDividerICCalculator", "CipherRouter", "CipherClassifier", "JobScheduler", "SearchControl", "ShardCoordinator", "ShardWorker",
+                "CorpusGenerator", "SolveRateBenchmark", "NGramTrainer", "NGramCounts", "ParallelTempering",
+                "SegmentedText", "Alphabet", "WordSegmenter", "SearchCheckpoint", "CheckpointWriter", "Utils"
+        };
+        for (String name : classes) {
+            try {
+                Class.forName(Launcher.class.getPackageName() + "." + name);
+            } catch (ClassNotFoundException e) {
+                System.err.println("Missing class: " + name);
+                complete = false;
+            }
+        }
+
+        try {
+            NGramScorer ngramScorer = SubstitutionWithKeywordSolver.loadNGramScorer();
+            SegmentedText text = SegmentedText.of("WARMUPTEXTFORTHESCORER", ngramScorer.alphabet());
+            AffineCipherSolver.solve(text, ngramScorer, 1);
+            System.out.println("Warm-up finished");
+        } catch (IOException e) {
+            System.err.println("Error loading N-gram scorer: " + e.getMessage());
+            complete = false;
+        }
+        return complete;
+    }
+}
@@ -0,0 +1,170 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Cache of the compiled scorer tables. Parsing the n-gram text files takes most of the
+ * start-up time of a short job; the cache stores the dense log-probability tables as raw
+ * doubles so later runs copy them straight from a memory-mapped file. There is one cache
+ * file per model set (directory, file names and alphabet). The file records the size and
+ * modification time of every source file, so editing or retraining a model overwrites the
+ * stale entry instead of adding another one.
+ */
+public class ModelCache {
+
+    private static final int MAGIC = 0x4B53424D; // "KSBM"
+    // Version 2 names the alphabet of the tables, version 3 the fingerprint of the model files
+    private static final int VERSION = 3;
+    private static final String DEFAULT_DIR = "target/model-cache";
+
+    private final Path cacheDir;
+
+    public ModelCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    // Cache directory from the ksb.modelCache system property, target/model-cache by default
+    public static ModelCache defaultCache() {
+        return new ModelCache(Paths.get(System.getProperty("ksb.modelCache", DEFAULT_DIR)));
+    }
+
+    /**
+     * Returns the scorer for the files, from the cache if it holds a current copy, otherwise
+     * parsed from the files and then stored in the cache. Failing to write the cache is not fatal.
+     */
+    public NGramScorer load(String ngramDir, String[] ngramFiles) throws IOException {
+        return load(ngramDir, ngramFiles, Alphabet.LATIN_26);
+    }
+
+    public NGramScorer load(String ngramDir, String[] ngramFiles, Alphabet alphabet) throws IOException {
+        Path cacheFile = cacheDir.resolve("scorer-" + Long.toHexString(key(ngramDir, ngramFiles, alphabet)) + ".bin");
+        String fingerprint = fingerprint(ngramDir, ngramFiles);
+        if (Files.exists(cacheFile)) {
+            try {
+                NGramScorer scorer = read(cacheFile, fingerprint);
+                if (scorer != null) {
+                    System.out.println("Loaded n-gram tables from cache " + cacheFile);
+                    return scorer;
+                }
+                System.out.println("Model files changed, rebuilding cache " + cacheFile);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable model cache " + cacheFile + ": " + e.getMessage());
+            }
+        }
+
+        NGramScorer scorer = new NGramScorer(ngramDir, ngramFiles, alphabet);
+        try {
+            write(scorer, fingerprint, cacheFile);
+        } catch (IOException e) {
+            System.err.println("Error writing model cache: " + e.getMessage());
+        }
+        return scorer;
+    }
+
+    // Hash of the alphabet and the path of every model file; names the cache file of the model set
+    private static long key(String ngramDir, String[] ngramFiles, Alphabet alphabet) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < alphabet.name().length(); i++) {
+            hash = 31 * hash + alphabet.name().charAt(i);
+        }
+        for (String filename : ngramFiles) {
+            String part = Paths.get(ngramDir + filename).toAbsolutePath().normalize().toString();
+            for (int i = 0; i < part.length(); i++) {
+                hash = 31 * hash + part.charAt(i);
+            }
+        }
+        return hash;
+    }
+
+    // Path, size and modification time of every model file; a cache file is current only if it matches
+    private static String fingerprint(String ngramDir, String[] ngramFiles) throws IOException {
+        StringBuilder fingerprint = new StringBuilder();
+        for (String filename : ngramFiles) {
+            Path path = Paths.get(ngramDir + filename).toAbsolutePath().normalize();
+            fingerprint.append(path).append('|').append(Files.size(path)).append('|')
+                    .append(Files.getLastModifiedTime(path).toMillis()).append('\n');
+        }
+        return fingerprint.toString();
+    }
+
+    private void write(NGramScorer scorer, String fingerprint, Path path) throws IOException {
+        Files.createDirectories(cacheDir);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int[] orders = scorer.orders();
+            byte[] alphabetName = scorer.alphabet().name().getBytes(StandardCharsets.UTF_8);
+            byte[] source = fingerprint.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(20 + alphabetName.length + source.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(alphabetName.length).put(alphabetName)
+                    .putInt(source.length).put(source).putInt(orders.length).flip();
+            writeFully(channel, header);
+            for (int order : orders) {
+                double[] table = scorer.table(order);
+                ByteBuffer buffer = ByteBuffer.allocate(16 + table.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(order).putInt(table.length).putDouble(scorer.floor(order));
+                buffer.asDoubleBuffer().put(table);
+                buffer.position(0);
+                writeFully(channel, buffer);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Null if the cache file was built from other versions of the model files
+    private static NGramScorer read(Path path, String fingerprint) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt() != MAGIC) {
+                throw new IOException("Not a model cache file");
+            }
+            int version = mapped.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported model cache version " + version);
+            }
+            byte[] alphabetName = new byte[mapped.getInt()];
+            mapped.get(alphabetName);
+            byte[] source = new byte[mapped.getInt()];
+            mapped.get(source);
+            if (!fingerprint.equals(new String(source, StandardCharsets.UTF_8))) {
+                return null;
+            }
+            Alphabet alphabet;
+            try {
+                alphabet = Alphabet.forName(new String(alphabetName, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+            NGramScorer scorer = new NGramScorer(alphabet);
+            int orderCount = mapped.getInt();
+            for (int i = 0; i < orderCount; i++) {
+                int order = mapped.getInt();
+                int length = mapped.getInt();
+                double floor = mapped.getDouble();
+                if (order < 1 || length != alphabet.power(order)) {
+                    throw new IOException("Corrupt table for order " + order);
+                }
+                double[] table = new double[length];
+                mapped.asDoubleBuffer().get(table);
+                mapped.position(mapped.position() + length * Double.BYTES);
+                scorer.addTable(order, table, floor);
+            }
+            return scorer;
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("Truncated model cache file");
+        }
+    }
+}
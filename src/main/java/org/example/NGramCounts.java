@@ -0,0 +1,163 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Counts of all n-grams of one order in a dense table indexed by the base-radix value of the
+ * n-gram, the radix being the size of the alphabet. Written either in the text format read by
+ * {@link NGramScorer} ("TION 13168375", most frequent first, UTF-8) or in a compact binary form
+ * that loads much faster.
+ */
+public class NGramCounts {
+
+    private static final int MAGIC = 0x4B53424E; // "KSBN"
+    // Version 2 names the alphabet, version 1 files are A-Z
+    private static final int VERSION = 2;
+
+    static final String[] ORDER_NAMES = {null, "monograms", "bigrams", "trigrams", "quadgrams", "quintgrams"};
+
+    final int order;
+    final long[] counts;
+    final Alphabet alphabet;
+
+    NGramCounts(int order, long[] counts, Alphabet alphabet) {
+        this.order = order;
+        this.counts = counts;
+        this.alphabet = alphabet;
+    }
+
+    // File name NGramScorer recognises for this order, e.g. english_quadgrams.txt
+    static String fileName(String prefix, int order, String extension) {
+        return prefix + "_" + ORDER_NAMES[order] + extension;
+    }
+
+    public int distinct() {
+        int distinct = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    public long total() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Drop n-grams seen fewer than minCount times; they score the floor instead
+    public void prune(long minCount) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] < minCount) {
+                counts[i] = 0;
+            }
+        }
+    }
+
+    public void writeText(Path path) throws IOException {
+        // Sort by count, then index, packed into one long: 24 index bits for quintgrams of A-Z
+        int indexBits = 32 - Integer.numberOfLeadingZeros(counts.length - 1);
+        long indexMask = (1L << indexBits) - 1;
+        long[] packed = new long[distinct()];
+        int n = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                packed[n++] = (counts[i] << indexBits) | i;
+            }
+        }
+        Arrays.sort(packed);
+
+        int radix = alphabet.size();
+        char[] ngram = new char[order];
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = packed.length - 1; i >= 0; i--) {
+                int index = (int) (packed[i] & indexMask);
+                for (int j = order - 1, rest = index; j >= 0; j--, rest /= radix) {
+                    ngram[j] = alphabet.symbol(rest % radix);
+                }
+                out.write(ngram);
+                out.write(' ');
+                out.write(Long.toString(packed[i] >>> indexBits));
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Binary form: magic, version, alphabet name, order, number of entries, then per entry in
+     * index order the gap to the previous index and the count, both as variable-length integers.
+     */
+    public void writeBinary(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(alphabet.name());
+            out.writeInt(order);
+            out.writeInt(distinct());
+            int previous = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    writeVarLong(out, i - previous);
+                    writeVarLong(out, counts[i]);
+                    previous = i;
+                }
+            }
+        }
+    }
+
+    public static NGramCounts readBinary(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a binary n-gram file: " + path);
+            }
+            int version = in.readInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported n-gram file version " + version + " in " + path);
+            }
+            Alphabet alphabet;
+            try {
+                alphabet = version == 1 ? Alphabet.LATIN_26 : Alphabet.forName(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage() + " in " + path);
+            }
+            int order = in.readInt();
+            if (order < 1 || order >= ORDER_NAMES.length) {
+                throw new IOException("Invalid n-gram order " + order + " in " + path);
+            }
+            long[] counts = new long[alphabet.power(order)];
+            int entries = in.readInt();
+            int index = 0;
+            for (int i = 0; i < entries; i++) {
+                index += (int) readVarLong(in);
+                counts[index] = readVarLong(in);
+            }
+            return new NGramCounts(order, counts, alphabet);
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
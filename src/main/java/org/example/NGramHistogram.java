@@ -0,0 +1,115 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * The distinct n-grams of a ciphertext with their counts, per n-gram length. Under a
+ * monoalphabetic key the plaintext n-gram at a position depends only on the ciphertext
+ * n-gram there, so a key is scored by mapping every distinct n-gram once and weighting its
+ * log probability by the count, see {@link NGramScorer#score(NGramHistogram, byte[])}.
+ *
+ * <p>Lengths where that would not save work (few repeats, e.g. quintgrams of a short text)
+ * are not compressed and are scored by walking the text. N-grams do not cross segments.
+ */
+public class NGramHistogram {
+
+    final SegmentedText text;
+    // Per n-gram length: the codes of every distinct n-gram, n per n-gram, or null if not compressed
+    final byte[][] letters;
+    // Per n-gram length: how often each distinct n-gram occurs
+    final int[][] counts;
+
+    private NGramHistogram(SegmentedText text, byte[][] letters, int[][] counts) {
+        this.text = text;
+        this.letters = letters;
+        this.counts = counts;
+    }
+
+    /**
+     * Builds the histograms of the given n-gram lengths.
+     *
+     * @param orders n-gram lengths, e.g. {@link NGramScorer#orders()}
+     */
+    public static NGramHistogram of(SegmentedText text, int[] orders) {
+        int maxOrder = Arrays.stream(orders).max().orElse(0);
+        byte[][] letters = new byte[maxOrder + 1][];
+        int[][] counts = new int[maxOrder + 1][];
+        int radix = text.alphabet.size();
+        for (int ngramLength : orders) {
+            int[] indices = windowIndices(text, ngramLength);
+            Arrays.sort(indices);
+            int distinct = 0;
+            for (int i = 0; i < indices.length; i++) {
+                if (i == 0 || indices[i] != indices[i - 1]) {
+                    distinct++;
+                }
+            }
+            // Mapping an n-gram costs about n times a step of the sliding window
+            if ((long) distinct * ngramLength >= indices.length) {
+                continue;
+            }
+
+            byte[] gramLetters = new byte[distinct * ngramLength];
+            int[] gramCounts = new int[distinct];
+            int g = -1;
+            for (int i = 0; i < indices.length; i++) {
+                if (i == 0 || indices[i] != indices[i - 1]) {
+                    g++;
+                    int index = indices[i];
+                    for (int k = ngramLength - 1; k >= 0; k--) {
+                        gramLetters[g * ngramLength + k] = (byte) (index % radix);
+                        index /= radix;
+                    }
+                }
+                gramCounts[g]++;
+            }
+            letters[ngramLength] = gramLetters;
+            counts[ngramLength] = gramCounts;
+        }
+        return new NGramHistogram(text, letters, counts);
+    }
+
+    // Base-radix index of every n-gram lying within one segment
+    private static int[] windowIndices(SegmentedText text, int ngramLength) {
+        int windows = 0;
+        for (int s = 0; s < text.segmentCount(); s++) {
+            windows += Math.max(0, text.end(s) - text.start(s) - ngramLength + 1);
+        }
+        int[] indices = new int[windows];
+        int modulus = text.alphabet.power(ngramLength - 1);
+        int radix = text.alphabet.size();
+        int w = 0;
+        for (int s = 0; s < text.segmentCount(); s++) {
+            int index = 0;
+            int firstFull = text.start(s) + ngramLength - 1;
+            for (int i = text.start(s); i < text.end(s); i++) {
+                index = (index % modulus) * radix + text.codes[i];
+                if (i >= firstFull) {
+                    indices[w++] = index;
+                }
+            }
+        }
+        return indices;
+    }
+
+    // Whether n-grams of this length are scored from the histogram rather than by walking the text
+    public boolean isCompressed(int ngramLength) {
+        return ngramLength < letters.length && letters[ngramLength] != null;
+    }
+
+    // Number of distinct n-grams of a compressed length
+    public int distinct(int ngramLength) {
+        return counts[ngramLength].length;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "NGramHistogram[", "]");
+        for (int n = 1; n < letters.length; n++) {
+            if (isCompressed(n)) {
+                joiner.add(n + "-grams: " + distinct(n) + " distinct");
+            }
+        }
+        return joiner.toString();
+    }
+}
@@ -1,27 +1,64 @@
 package org.example;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Scores texts of symbol codes by their n-gram log probabilities. The tables are dense and
+ * indexed by the base-radix value of the n-gram, where the radix is the size of the model's
+ * alphabet (26 for the English models), so scoring is a rolling index and an array read per
+ * symbol for any alphabet.
+ */
 public class NGramScorer {
-    private Map<Integer, Map<String, Double>> ngramMaps;
-    private Map<Integer, Double> floorValues;
+    private static final int MAX_ORDER = 5;
+
+    private final Alphabet alphabet;
+    private final int radix;
+    // Log probabilities indexed by the base-radix value of the n-gram, unseen n-grams hold the floor
+    private final double[][] tables = new double[MAX_ORDER + 1][];
+    private final double[] floorValues = new double[MAX_ORDER + 1];
+    private int[] orders = new int[0];
+
+    // Cascade: orders up to cascadeCheapOrder rank every candidate, the rest only promoted ones
+    private int cascadeCheapOrder;
+    private double cascadeMargin;
+    private final LongAdder cascadeCandidates = new LongAdder();
+    private final LongAdder cascadePromoted = new LongAdder();
+
+    // Empty scorer, filled by ModelCache
+    NGramScorer(Alphabet alphabet) {
+        this.alphabet = alphabet;
+        this.radix = alphabet.size();
+    }
 
     public NGramScorer(String ngramDir, String[] ngramFiles) throws IOException {
-        ngramMaps = new HashMap<>();
-        floorValues = new HashMap<>();
+        this(ngramDir, ngramFiles, Alphabet.LATIN_26);
+    }
 
+    /**
+     * Loads a model of the given alphabet. Files ending in .bin are read in the binary form
+     * written by NGramTrainer, text files are read as UTF-8.
+     */
+    public NGramScorer(String ngramDir, String[] ngramFiles, Alphabet alphabet) throws IOException {
+        this(alphabet);
         for (String filename : ngramFiles) {
+            if (filename.endsWith(".bin")) {
+                loadBinary(ngramDir, filename);
+                continue;
+            }
             int ngramLength = getNgramLengthFromFilename(filename);
             Map<String, Double> ngrams = new HashMap<>();
-            BufferedReader br = new BufferedReader(new FileReader(ngramDir + filename));
+            BufferedReader br = Files.newBufferedReader(Paths.get(ngramDir + filename));
             String line;
             double total = 0.0;
             while ((line = br.readLine()) != null) {
                 String[] parts = line.trim().split("\\s+");
                 if (parts.length == 2) {
-                    String key = parts[0].toUpperCase();
-                    int count = Integer.parseInt(parts[1]);
+                    String key = parts[0];
+                    long count = Long.parseLong(parts[1]);
                     ngrams.put(key, (double) count);
                     total += count;
                 }
@@ -32,20 +69,56 @@ public class NGramScorer {
                 throw new IllegalArgumentException("N-gram file " + filename + " is empty.");
             }
 
-            // Convert counts to log probabilities
+            // Convert counts to log probabilities in a dense table
+            double floor = Math.log10(0.01 / total);
+            double[] table = new double[alphabet.power(ngramLength)];
+            Arrays.fill(table, floor);
             for (Map.Entry<String, Double> entry : ngrams.entrySet()) {
-                double logProbability = Math.log10(entry.getValue() / total);
-                entry.setValue(logProbability);
+                int index = indexOf(entry.getKey(), ngramLength);
+                if (index >= 0) {
+                    table[index] = Math.log10(entry.getValue() / total);
+                }
             }
-            double floor = Math.log10(0.01 / total);
 
-            ngramMaps.put(ngramLength, ngrams);
-            floorValues.put(ngramLength, floor);
+            addTable(ngramLength, table, floor);
 
             System.out.println("Loaded " + ngrams.size() + " " + ngramLength + "-grams from " + filename);
         }
     }
 
+    private void loadBinary(String ngramDir, String filename) throws IOException {
+        NGramCounts counts = NGramCounts.readBinary(new File(ngramDir + filename).toPath());
+        if (!counts.alphabet.sameCodes(alphabet)) {
+            throw new IllegalArgumentException("N-gram file " + filename + " is a " + counts.alphabet
+                    + " model, expected " + alphabet);
+        }
+        double total = counts.total();
+        if (total == 0) {
+            throw new IllegalArgumentException("N-gram file " + filename + " is empty.");
+        }
+
+        double floor = Math.log10(0.01 / total);
+        double[] table = new double[counts.counts.length];
+        for (int i = 0; i < table.length; i++) {
+            long count = counts.counts[i];
+            table[i] = count > 0 ? Math.log10(count / total) : floor;
+        }
+
+        addTable(counts.order, table, floor);
+
+        System.out.println("Loaded " + counts.distinct() + " " + counts.order + "-grams from " + filename);
+    }
+
+    void addTable(int ngramLength, double[] table, double floor) {
+        if (tables[ngramLength] == null) {
+            orders = Arrays.copyOf(orders, orders.length + 1);
+            orders[orders.length - 1] = ngramLength;
+            Arrays.sort(orders);
+        }
+        tables[ngramLength] = table;
+        floorValues[ngramLength] = floor;
+    }
+
     private int getNgramLengthFromFilename(String filename) {
         if (filename.contains("monograms")) {
             return 1;
@@ -62,24 +135,391 @@ public class NGramScorer {
         }
     }
 
+    // Base-radix index of an n-gram, or -1 if it is not made of exactly ngramLength symbols of the alphabet
+    private int indexOf(String ngram, int ngramLength) {
+        if (ngram.length() != ngramLength) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < ngramLength; i++) {
+            int c = alphabet.code(ngram.charAt(i));
+            if (c < 0) {
+                return -1;
+            }
+            index = index * radix + c;
+        }
+        return index;
+    }
+
+    public Alphabet alphabet() {
+        return alphabet;
+    }
+
+    int[] orders() {
+        return orders.clone();
+    }
+
+    double[] table(int ngramLength) {
+        return tables[ngramLength];
+    }
+
+    double floor(int ngramLength) {
+        return floorValues[ngramLength];
+    }
+
+    /**
+     * Touches every page of the tables and runs the scoring loop until the JIT has compiled
+     * it, so the first real candidates are scored at full speed.
+     */
+    public void warmUp() {
+        double sink = 0.0;
+        for (int ngramLength : orders) {
+            double[] table = tables[ngramLength];
+            for (int i = 0; i < table.length; i += 512) { // one read per 4 KB page
+                sink += table[i];
+            }
+        }
+
+        byte[] text = new byte[200];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ((i * 7 + i / radix) % radix);
+        }
+        for (int i = 0; i < 20000; i++) {
+            sink += scoreRange(text, 0, text.length);
+        }
+        if (sink == 1.0) { // keeps the loop from being optimised away
+            System.out.println();
+        }
+    }
+
     public double score(String text) {
         double score = 0.0;
+        int radix = this.radix;
 
-        for (Map.Entry<Integer, Map<String, Double>> entry : ngramMaps.entrySet()) {
-            int ngramLength = entry.getKey();
-            Map<String, Double> ngrams = entry.getValue();
-            double floor = floorValues.get(ngramLength);
+        for (int ngramLength : orders) {
+            double[] table = tables[ngramLength];
+            double floor = floorValues[ngramLength];
+            int modulus = alphabet.power(ngramLength - 1);
 
-            for (int i = 0; i <= text.length() - ngramLength; i++) {
-                String ngram = text.substring(i, i + ngramLength);
-                if (ngrams.containsKey(ngram)) {
-                    score += ngrams.get(ngram);
+            // N-grams containing anything but symbols of the alphabet score the floor
+            int index = 0;
+            int validRun = 0;
+            for (int i = 0; i < text.length(); i++) {
+                int c = alphabet.code(text.charAt(i));
+                if (c < 0) {
+                    validRun = 0;
+                    index = 0;
                 } else {
-                    score += floor;
+                    validRun++;
+                    index = (index % modulus) * radix + c;
+                }
+                if (i >= ngramLength - 1) {
+                    score += validRun >= ngramLength ? table[index] : floor;
                 }
             }
         }
 
         return score;
     }
+
+    /**
+     * Scores symbol codes of the model's alphabet (0 = A ... 25 = Z for A-Z) in text[from, to).
+     */
+    public double score(byte[] text, int from, int to) {
+        return scoreRange(text, from, to);
+    }
+
+    private double scoreRange(byte[] text, int from, int to) {
+        return scoreRange(text, from, to, orders);
+    }
+
+    private double scoreRange(byte[] text, int from, int to, int[] orders) {
+        double score = 0.0;
+        int radix = this.radix;
+
+        for (int ngramLength : orders) {
+            double[] table = tables[ngramLength];
+            int modulus = alphabet.power(ngramLength - 1);
+
+            int index = 0;
+            int firstFull = from + ngramLength - 1;
+            for (int i = from; i < to; i++) {
+                index = (index % modulus) * radix + text[i];
+                if (i >= firstFull) {
+                    score += table[index];
+                }
+            }
+        }
+
+        return score;
+    }
+
+    /**
+     * Scores letter codes split into segments; no n-gram crosses a segment boundary. This runs
+     * once per key, so the codes are not checked here: they have to be of {@link #alphabet()},
+     * which the solvers check once on the {@link SegmentedText} they are given.
+     *
+     * @param text    letter codes of all segments
+     * @param offsets segment i spans text[offsets[i], offsets[i + 1])
+     */
+    public double score(byte[] text, int[] offsets) {
+        double score = 0.0;
+        for (int i = 0; i + 1 < offsets.length; i++) {
+            score += scoreRange(text, offsets[i], offsets[i + 1]);
+        }
+        return score;
+    }
+
+    /**
+     * Scores only the n-grams starting at the given positions, for incremental rescoring:
+     * after a change to a few letters, the score difference is the difference of the
+     * windows that contain them.
+     *
+     * @param text   letter codes
+     * @param starts starts[n] lists the start positions of the n-grams of length n to score;
+     *               entries for lengths without a table are ignored, see {@link #orders()}
+     */
+    public double scoreWindows(byte[] text, int[][] starts) {
+        double score = 0.0;
+        int radix = this.radix;
+        for (int ngramLength : orders) {
+            if (ngramLength >= starts.length || starts[ngramLength] == null) {
+                continue;
+            }
+            double[] table = tables[ngramLength];
+            for (int start : starts[ngramLength]) {
+                int index = 0;
+                for (int i = start; i < start + ngramLength; i++) {
+                    index = index * radix + text[i];
+                }
+                score += table[index];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Start positions of the n-grams, per n-gram length, that contain at least one of the
+     * given positions and lie within one segment; the argument for {@link #scoreWindows}.
+     *
+     * @param positions ascending positions in the text
+     * @param offsets   segment i spans [offsets[i], offsets[i + 1])
+     */
+    public int[][] windowsContaining(int[] positions, int[] offsets) {
+        int[][] starts = new int[orders[orders.length - 1] + 1][];
+        boolean[] marked = new boolean[offsets[offsets.length - 1]];
+        for (int ngramLength : orders) {
+            Arrays.fill(marked, false);
+            int[] list = new int[positions.length * ngramLength];
+            int count = 0;
+            int segment = 0;
+            for (int position : positions) {
+                while (offsets[segment + 1] <= position) {
+                    segment++;
+                }
+                int from = Math.max(offsets[segment], position - ngramLength + 1);
+                int to = Math.min(position, offsets[segment + 1] - ngramLength);
+                for (int start = from; start <= to; start++) {
+                    if (!marked[start]) {
+                        marked[start] = true;
+                        list[count++] = start;
+                    }
+                }
+            }
+            starts[ngramLength] = Arrays.copyOf(list, count);
+        }
+        return starts;
+    }
+
+    public double score(SegmentedText text) {
+        checkAlphabet(text);
+        return score(text.codes, text.offsets);
+    }
+
+    // Codes of another alphabet would index the tables out of step, or out of bounds
+    void checkAlphabet(SegmentedText text) {
+        if (!text.alphabet.sameCodes(alphabet)) {
+            throw new IllegalArgumentException("Text in " + text.alphabet + " scored with a " + alphabet + " model");
+        }
+    }
+
+    /**
+     * Scores the decryption of a histogram's text under a monoalphabetic key without
+     * building it: every distinct ciphertext n-gram is mapped once and counted as often as
+     * it occurs. Equals the score of the decrypted text up to rounding.
+     *
+     * @param histogram ciphertext histogram built for (at least) {@link #orders()}
+     * @param mapping   plaintext code of every ciphertext code
+     */
+    public double score(NGramHistogram histogram, byte[] mapping) {
+        return scoreHistogram(histogram, mapping, orders);
+    }
+
+    public NGramHistogram histogram(SegmentedText text) {
+        checkAlphabet(text);
+        return NGramHistogram.of(text, orders);
+    }
+
+    private double scoreHistogram(NGramHistogram histogram, byte[] mapping, int[] orders) {
+        double score = 0.0;
+        int radix = this.radix;
+        for (int ngramLength : orders) {
+            double[] table = tables[ngramLength];
+            if (!histogram.isCompressed(ngramLength)) {
+                score += scoreMapped(histogram.text, mapping, ngramLength);
+                continue;
+            }
+            byte[] letters = histogram.letters[ngramLength];
+            int[] counts = histogram.counts[ngramLength];
+            int p = 0;
+            for (int count : counts) {
+                int index = 0;
+                for (int k = 0; k < ngramLength; k++) {
+                    index = index * radix + mapping[letters[p++]];
+                }
+                score += count * table[index];
+            }
+        }
+        return score;
+    }
+
+    // Sliding window over the ciphertext, mapping every letter on the way
+    private double scoreMapped(SegmentedText text, byte[] mapping, int ngramLength) {
+        double[] table = tables[ngramLength];
+        int modulus = alphabet.power(ngramLength - 1);
+        int radix = this.radix;
+        double score = 0.0;
+        for (int s = 0; s < text.segmentCount(); s++) {
+            int index = 0;
+            int firstFull = text.start(s) + ngramLength - 1;
+            for (int i = text.start(s); i < text.end(s); i++) {
+                index = (index % modulus) * radix + mapping[text.codes[i]];
+                if (i >= firstFull) {
+                    score += table[index];
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Enables the scoring cascade for the search loops that keep a top-K list: candidates
+     * are first scored with the orders up to cheapOrder, and only those whose cheap score is
+     * within the margin of the K-th best cheap score so far also get the higher orders.
+     *
+     * @param cheapOrder      highest order of the cheap stage, e.g. 3
+     * @param marginPerLetter margin in log10 probability per letter of text
+     */
+    public void setCascade(int cheapOrder, double marginPerLetter) {
+        cascadeCheapOrder = cheapOrder;
+        cascadeMargin = marginPerLetter;
+    }
+
+    public boolean isCascadeEnabled() {
+        return cascadeCheapOrder > 0 && orders[0] <= cascadeCheapOrder && orders[orders.length - 1] > cascadeCheapOrder;
+    }
+
+    /**
+     * A filter for one search loop keeping the top K candidates; not thread-safe, every
+     * thread needs its own. Without the cascade enabled it scores every candidate in full.
+     */
+    public Cascade cascade(int topK) {
+        return new Cascade(topK);
+    }
+
+    // Candidates seen and promoted by all cascades since the last reset
+    public String getCascadeStats() {
+        long candidates = cascadeCandidates.sum();
+        long promoted = cascadePromoted.sum();
+        return String.format("cascade: %d candidates, %d promoted to orders above %d (%.1f%%)", candidates, promoted,
+                cascadeCheapOrder, candidates == 0 ? 0.0 : 100.0 * promoted / candidates);
+    }
+
+    public void resetCascadeStats() {
+        cascadeCandidates.reset();
+        cascadePromoted.reset();
+    }
+
+    public class Cascade {
+        private final boolean enabled = isCascadeEnabled();
+        private final int[] cheapOrders;
+        private final int[] fullOrders;
+        // Best cheap scores so far, ascending; the first is the K-th best once full
+        private final double[] best;
+        private int bestCount;
+
+        private Cascade(int topK) {
+            cheapOrders = Arrays.stream(orders).filter(n -> n <= cascadeCheapOrder).toArray();
+            fullOrders = Arrays.stream(orders).filter(n -> n > cascadeCheapOrder).toArray();
+            best = new double[Math.max(1, topK)];
+        }
+
+        /**
+         * Scores letter codes split into segments like {@link #score(byte[], int[])}.
+         *
+         * @return the full score, or negative infinity if the candidate was not promoted
+         */
+        public double score(byte[] text, int[] offsets) {
+            if (!enabled) {
+                return NGramScorer.this.score(text, offsets);
+            }
+            double cheap = 0.0;
+            for (int i = 0; i + 1 < offsets.length; i++) {
+                cheap += scoreRange(text, offsets[i], offsets[i + 1], cheapOrders);
+            }
+            if (!promote(cheap, offsets[offsets.length - 1])) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            double score = cheap;
+            for (int i = 0; i + 1 < offsets.length; i++) {
+                score += scoreRange(text, offsets[i], offsets[i + 1], fullOrders);
+            }
+            return score;
+        }
+
+        // Like score(NGramHistogram, byte[]), with the cascade
+        public double score(NGramHistogram histogram, byte[] mapping) {
+            if (!enabled) {
+                return NGramScorer.this.score(histogram, mapping);
+            }
+            double cheap = scoreHistogram(histogram, mapping, cheapOrders);
+            if (!promote(cheap, histogram.text.length())) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            return cheap + scoreHistogram(histogram, mapping, fullOrders);
+        }
+
+        private boolean promote(double cheap, int length) {
+            cascadeCandidates.increment();
+            boolean promote = bestCount < best.length || cheap >= best[0] - cascadeMargin * length;
+            insert(cheap);
+            if (promote) {
+                cascadePromoted.increment();
+            }
+            return promote;
+        }
+
+        // Keep the cheap score if it is among the K best
+        private void insert(double cheap) {
+            int i;
+            if (bestCount < best.length) {
+                i = bestCount++;
+            } else if (cheap > best[0]) {
+                i = 0;
+                while (i + 1 < best.length && best[i + 1] < cheap) {
+                    best[i] = best[i + 1];
+                    i++;
+                }
+                best[i] = cheap;
+                return;
+            } else {
+                return;
+            }
+            while (i > 0 && best[i - 1] > cheap) {
+                best[i] = best[i - 1];
+                i--;
+            }
+            best[i] = cheap;
+        }
+    }
 }
@@ -0,0 +1,328 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds n-gram model packs from large plain-text corpora. The corpus files are split into
+ * chunks that are memory-mapped and counted in parallel, each thread into its own dense
+ * long[] tables for orders 1 to maxOrder; the per-thread tables are summed at the end.
+ * Only the symbols of the alphabet are counted (case-folded, UTF-8 decoded), everything else
+ * is skipped, so n-grams run across spaces and punctuation like in the shipped English models.
+ */
+public class NGramTrainer {
+
+    private static final int DEFAULT_CHUNK_BYTES = 64 << 20;
+    // Heap kept free for everything but the count tables
+    private static final long HEAP_RESERVE_BYTES = 64L << 20;
+
+    // Longest UTF-8 sequence of a char, a chunk reads this far past its end to finish its last character
+    private static final int MAX_SEQUENCE_BYTES = 3;
+
+    private final int maxOrder;
+    private final int threads;
+    private final int chunkBytes;
+    private final Alphabet alphabet;
+    private final int radix;
+
+    /**
+     * A byte range of one corpus file.
+     */
+    private static class Chunk {
+        final Path file;
+        final long start;
+        final long end;
+
+        Chunk(Path file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * @param maxOrder         highest order counted, at most 5
+     * @param requestedThreads number of counting threads; fewer are used if their tables do not fit the heap
+     * @param chunkBytes       size of the memory-mapped chunks
+     * @param alphabet         the symbols counted
+     */
+    public NGramTrainer(int maxOrder, int requestedThreads, int chunkBytes, Alphabet alphabet) {
+        if (maxOrder < 1 || maxOrder >= NGramCounts.ORDER_NAMES.length) {
+            throw new IllegalArgumentException("Order must be between 1 and " + (NGramCounts.ORDER_NAMES.length - 1));
+        }
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.maxOrder = maxOrder;
+        this.chunkBytes = chunkBytes;
+        this.alphabet = alphabet;
+        this.radix = alphabet.size();
+
+        long tableBytes = 0;
+        for (int order = 1; order <= maxOrder; order++) {
+            tableBytes += (long) alphabet.power(order) * Long.BYTES;
+        }
+        long available = Runtime.getRuntime().maxMemory() - HEAP_RESERVE_BYTES;
+        int fitting = (int) Math.min(Integer.MAX_VALUE, available / tableBytes);
+        if (fitting < 1) {
+            throw new IllegalStateException("Count tables need " + (tableBytes >> 20) + " MB per thread; "
+                    + "increase the heap (-Xmx) or lower the order.");
+        }
+        this.threads = Math.max(1, Math.min(requestedThreads, fitting));
+        if (threads < requestedThreads) {
+            System.out.println("Using " + threads + " threads; the heap holds no more count tables.");
+        }
+    }
+
+    /**
+     * Counts the n-grams of all files.
+     *
+     * @param files the corpus files; n-grams do not run from one file into the next
+     * @return the counts of orders 1 to maxOrder, index 0 unused
+     */
+    public NGramCounts[] train(List<Path> files) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path file : files) {
+            long size = Files.size(file);
+            for (long start = 0; start < size; start += chunkBytes) {
+                chunks.add(new Chunk(file, start, Math.min(size, start + chunkBytes)));
+            }
+        }
+
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        List<Callable<long[][]>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(() -> {
+                long[][] tables = newTables();
+                int c;
+                while ((c = nextChunk.getAndIncrement()) < chunks.size()) {
+                    count(chunks.get(c), tables);
+                    int done = finished.incrementAndGet();
+                    if (done % Math.max(1, chunks.size() / 20) == 0 || done == chunks.size()) {
+                        System.out.println("Counted chunk " + done + " / " + chunks.size());
+                    }
+                }
+                return tables;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long[][] merged = null;
+            for (Future<long[][]> future : executor.invokeAll(workers)) {
+                long[][] tables = future.get();
+                if (merged == null) {
+                    merged = tables;
+                } else {
+                    for (int order = 1; order <= maxOrder; order++) {
+                        long[] target = merged[order];
+                        long[] source = tables[order];
+                        for (int i = 0; i < target.length; i++) {
+                            target[i] += source[i];
+                        }
+                    }
+                }
+            }
+
+            NGramCounts[] result = new NGramCounts[maxOrder + 1];
+            for (int order = 1; order <= maxOrder; order++) {
+                result[order] = new NGramCounts(order, merged[order], alphabet);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Training interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Counting failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long[][] newTables() {
+        long[][] tables = new long[maxOrder + 1][];
+        for (int order = 1; order <= maxOrder; order++) {
+            tables[order] = new long[alphabet.power(order)];
+        }
+        return tables;
+    }
+
+    // Count the n-grams ending in the chunk; the letters before it are read to complete the first ones
+    private void count(Chunk chunk, long[][] tables) throws IOException {
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            int index = 0;
+            int run = 0;
+            if (chunk.start > 0) {
+                int[] history = precedingLetters(channel, chunk.start, maxOrder - 1);
+                for (int c : history) {
+                    index = index * radix + c;
+                }
+                run = history.length;
+            }
+
+            int modulus = alphabet.power(maxOrder - 1);
+            long mapEnd = Math.min(channel.size(), chunk.end + MAX_SEQUENCE_BYTES);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, mapEnd - chunk.start);
+            int length = (int) (chunk.end - chunk.start);
+            for (int i = 0; i < length; i++) {
+                int c = codeAt(buffer, i);
+                if (c < 0) {
+                    continue;
+                }
+                index = (index % modulus) * radix + c;
+                if (run < maxOrder) {
+                    run++;
+                }
+                // The n-gram of each order is the trailing part of the rolling index
+                int mod = 1;
+                for (int order = 1; order <= run; order++) {
+                    mod *= radix;
+                    tables[order][index % mod]++;
+                }
+            }
+        }
+    }
+
+    // Up to maxLetters letter codes of the characters starting directly before the position, in text order
+    private int[] precedingLetters(FileChannel channel, long position, int maxLetters) throws IOException {
+        int window = 4096;
+        long from = Math.max(0, position - window);
+        long mapEnd = Math.min(channel.size(), position + MAX_SEQUENCE_BYTES);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, mapEnd - from);
+        int[] letters = new int[maxLetters];
+        int found = 0;
+        for (int i = (int) (position - from) - 1; i >= 0 && found < maxLetters; i--) {
+            int c = codeAt(buffer, i);
+            if (c >= 0) {
+                letters[maxLetters - 1 - found] = c;
+                found++;
+            }
+        }
+        return Arrays.copyOfRange(letters, maxLetters - found, maxLetters);
+    }
+
+    /**
+     * Code of the UTF-8 character starting at byte i, or -1 if the alphabet does not read it.
+     * Continuation bytes also give -1, so every character is counted once, at its first byte.
+     */
+    private int codeAt(ByteBuffer buffer, int i) {
+        int b = buffer.get(i) & 0xFF;
+        if (b < 0x80) {
+            return alphabet.code(b);
+        }
+        if (alphabet.isAscii() || b < 0xC0 || b >= 0xF0) {
+            return -1;
+        }
+        if (b < 0xE0) {
+            return i + 1 < buffer.limit() ? alphabet.code((b & 0x1F) << 6 | (buffer.get(i + 1) & 0x3F)) : -1;
+        }
+        if (i + 2 >= buffer.limit()) {
+            return -1;
+        }
+        return alphabet.code((b & 0x0F) << 12 | (buffer.get(i + 1) & 0x3F) << 6 | (buffer.get(i + 2) & 0x3F));
+    }
+
+    /**
+     * Prunes the counts and writes one file per order in the requested formats.
+     *
+     * @param counts   counts returned by {@link #train(List)}
+     * @param outDir   directory of the model pack
+     * @param prefix   file name prefix, e.g. "english"
+     * @param minCount n-grams seen fewer times are dropped
+     * @param text     write the text format
+     * @param binary   write the binary format
+     */
+    public static void writePack(NGramCounts[] counts, Path outDir, String prefix, long minCount,
+                                 boolean text, boolean binary) throws IOException {
+        writePack(counts, outDir, prefix, minCount, text, binary, 1);
+    }
+
+    // Only orders from minOrder up are written, e.g. to add the quintgrams to an existing pack
+    public static void writePack(NGramCounts[] counts, Path outDir, String prefix, long minCount,
+                                 boolean text, boolean binary, int minOrder) throws IOException {
+        Files.createDirectories(outDir);
+        for (int order = minOrder; order < counts.length; order++) {
+            NGramCounts orderCounts = counts[order];
+            orderCounts.prune(minCount);
+            if (text) {
+                orderCounts.writeText(outDir.resolve(NGramCounts.fileName(prefix, order, ".txt")));
+            }
+            if (binary) {
+                orderCounts.writeBinary(outDir.resolve(NGramCounts.fileName(prefix, order, ".bin")));
+            }
+            System.out.println("Wrote " + orderCounts.distinct() + " " + order + "-grams ("
+                    + orderCounts.total() + " occurrences)");
+        }
+    }
+
+    public static void main(String[] args) {
+        List<Path> files = new ArrayList<>();
+        String outDir = "src/main/resources/";
+        String prefix = "english";
+        int minOrder = 1;
+        int maxOrder = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkMb = DEFAULT_CHUNK_BYTES >> 20;
+        long minCount = 1;
+        String format = "both";
+        Alphabet alphabet = Alphabet.selected();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out-dir" -> outDir = args[++i];
+                case "--prefix" -> prefix = args[++i];
+                case "--min-order" -> minOrder = Integer.parseInt(args[++i]);
+                case "--max-order" -> maxOrder = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--chunk-mb" -> chunkMb = Integer.parseInt(args[++i]);
+                case "--min-count" -> minCount = Long.parseLong(args[++i]);
+                case "--format" -> format = args[++i];
+                case "--alphabet" -> alphabet = Alphabet.forName(args[++i]);
+                default -> {
+                    if (args[i].startsWith("--")) {
+                        System.err.println("Unknown option: " + args[i]);
+                        return;
+                    }
+                    files.add(Paths.get(args[i]));
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: NGramTrainer [options] <corpus file>...");
+            return;
+        }
+        // A mapped chunk is indexed by int, so 1 GB is the limit
+        if (chunkMb < 1 || chunkMb > 1023) {
+            System.err.println("--chunk-mb must be between 1 and 1023");
+            System.err.println("Usage: NGramTrainer [options] <corpus file>...");
+            return;
+        }
+        if (minOrder < 1 || minOrder > maxOrder) {
+            System.err.println("--min-order must be between 1 and --max-order (" + maxOrder + ")");
+            return;
+        }
+        if (!format.equals("text") && !format.equals("binary") && !format.equals("both")) {
+            System.err.println("--format must be text, binary or both");
+            return;
+        }
+
+        try {
+            NGramTrainer trainer = new NGramTrainer(maxOrder, threads, chunkMb << 20, alphabet);
+            long start = System.nanoTime();
+            NGramCounts[] counts = trainer.train(files);
+            System.out.printf("Counted in %.1f s%n", (System.nanoTime() - start) / 1e9);
+            writePack(counts, Paths.get(outDir), prefix, minCount, !format.equals("binary"), !format.equals("text"), minOrder);
+        } catch (IOException e) {
+            System.err.println("Error training n-gram model: " + e.getMessage());
+        }
+    }
+}
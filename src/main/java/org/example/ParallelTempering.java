@@ -0,0 +1,219 @@
+package org.example;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Parallel tempering over any {@link SearchProblem}. Replicas at a geometric ladder of
+ * temperatures run Metropolis steps on separate threads; between rounds neighbouring
+ * replicas exchange their keys with the usual acceptance probability, so good keys found
+ * by the hot, exploring replicas drift down to the cold, refining ones.
+ *
+ * @param <K> the key representation
+ */
+public class ParallelTempering<K> {
+
+    private final SearchProblem<K> problem;
+    private final int replicas;
+    private final double minTemperature;
+    private final double maxTemperature;
+    private final int stepsPerRound;
+    private final int rounds;
+    private final int threads;
+    private final long seed;
+    private SearchControl control = SearchControl.NONE;
+    private SearchMonitor monitor = SearchMonitor.NONE;
+
+    /**
+     * Best key found by a run.
+     */
+    public static class Result<K> {
+        public final K key;
+        public final double fitness;
+        public final long evaluations;
+
+        Result(K key, double fitness, long evaluations) {
+            this.key = key;
+            this.fitness = fitness;
+            this.evaluations = evaluations;
+        }
+    }
+
+    private class Replica {
+        final Random random;
+        double temperature;
+        K key;
+        double fitness;
+        K bestKey;
+        double bestFitness;
+        long evaluations;
+
+        Replica(long seed, double temperature) {
+            this.random = new Random(seed);
+            this.temperature = temperature;
+            this.key = problem.randomKey(random);
+            this.fitness = problem.fitness(key);
+            this.bestKey = key;
+            this.bestFitness = fitness;
+            this.evaluations = 1;
+        }
+
+        // Metropolis steps at this replica's temperature
+        void run(int steps) {
+            for (int i = 0; i < steps; i++) {
+                K candidate = problem.mutate(key, random);
+                double candidateFitness = problem.fitness(candidate);
+                evaluations++;
+                double delta = candidateFitness - fitness;
+                if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                    key = candidate;
+                    fitness = candidateFitness;
+                    if (fitness > bestFitness) {
+                        bestKey = key;
+                        bestFitness = fitness;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param problem        the key space
+     * @param replicas       number of replicas (temperatures)
+     * @param minTemperature temperature of the coldest replica
+     * @param maxTemperature temperature of the hottest replica
+     * @param stepsPerRound  Metropolis steps each replica makes between exchanges
+     * @param rounds         number of exchange rounds
+     * @param threads        number of worker threads
+     * @param seed           seed of the replicas' generators
+     */
+    public ParallelTempering(SearchProblem<K> problem, int replicas, double minTemperature, double maxTemperature,
+                             int stepsPerRound, int rounds, int threads, long seed) {
+        if (replicas < 1) {
+            throw new IllegalArgumentException("At least one replica is required.");
+        }
+        this.problem = problem;
+        this.replicas = replicas;
+        this.minTemperature = minTemperature;
+        this.maxTemperature = maxTemperature;
+        this.stepsPerRound = stepsPerRound;
+        this.rounds = rounds;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    // Called between rounds, e.g. to pause the run
+    public void setControl(SearchControl control) {
+        this.control = control;
+    }
+
+    // Told about the steps of every round and the best key after every round that improved it
+    public void setMonitor(SearchMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    // Default thread count: one per replica, at most one per core
+    public static int defaultThreads(int replicas) {
+        return Math.max(1, Math.min(replicas, Runtime.getRuntime().availableProcessors()));
+    }
+
+    // Hottest temperature for n-gram fitness on a text of the given length; score
+    // differences between neighbouring keys grow roughly linearly with the length
+    public static double defaultMaxTemperature(int textLength) {
+        return Math.max(5.0, 0.25 * textLength);
+    }
+
+    public Result<K> run() {
+        // Index 0 is the coldest replica
+        List<Replica> ladder = new ArrayList<>();
+        Random exchangeRandom = new Random(seed);
+        for (int i = 0; i < replicas; i++) {
+            double fraction = replicas == 1 ? 0.0 : (double) i / (replicas - 1);
+            double temperature = minTemperature * Math.pow(maxTemperature / minTemperature, fraction);
+            ladder.add(new Replica(seed + 1 + i, temperature));
+        }
+        monitor.candidates(replicas);
+        double reportedFitness = Double.NEGATIVE_INFINITY;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (Replica replica : ladder) {
+                    tasks.add(() -> {
+                        replica.run(stepsPerRound);
+                        monitor.candidates(stepsPerRound);
+                        return null;
+                    });
+                }
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+
+                exchange(ladder, exchangeRandom);
+                Replica leader = best(ladder);
+                if (leader.bestFitness > reportedFitness) {
+                    reportedFitness = leader.bestFitness;
+                    K leaderKey = leader.bestKey;
+                    monitor.improved(reportedFitness, () -> problem.decrypt(leaderKey));
+                }
+                control.iterationBoundary((round + 1) / (double) rounds);
+
+                if ((round + 1) % Math.max(1, rounds / 10) == 0) {
+                    Replica best = best(ladder);
+                    System.out.println("Round " + (round + 1) + " / " + rounds + " | Best fitness: "
+                            + best.bestFitness + " | Key: " + problem.describe(best.bestKey));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replica failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Replica best = best(ladder);
+        long evaluations = 0;
+        for (Replica replica : ladder) {
+            evaluations += replica.evaluations;
+        }
+        return new Result<>(best.bestKey, best.bestFitness, evaluations);
+    }
+
+    // Swap the states of neighbouring temperatures with probability min(1, exp(dF * (1/Ti - 1/Tj)))
+    private void exchange(List<Replica> ladder, Random random) {
+        for (int i = 0; i + 1 < ladder.size(); i++) {
+            Replica colder = ladder.get(i);
+            Replica hotter = ladder.get(i + 1);
+            double exponent = (hotter.fitness - colder.fitness) * (1.0 / colder.temperature - 1.0 / hotter.temperature);
+            if (exponent >= 0 || random.nextDouble() < Math.exp(exponent)) {
+                K key = colder.key;
+                double fitness = colder.fitness;
+                colder.key = hotter.key;
+                colder.fitness = hotter.fitness;
+                hotter.key = key;
+                hotter.fitness = fitness;
+                // Each replica keeps its own best so far
+                if (colder.fitness > colder.bestFitness) {
+                    colder.bestKey = colder.key;
+                    colder.bestFitness = colder.fitness;
+                }
+                if (hotter.fitness > hotter.bestFitness) {
+                    hotter.bestKey = hotter.key;
+                    hotter.bestFitness = hotter.fitness;
+                }
+            }
+        }
+    }
+
+    private Replica best(List<Replica> ladder) {
+        Replica best = ladder.get(0);
+        for (Replica replica : ladder) {
+            if (replica.bestFitness > best.bestFitness) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+}
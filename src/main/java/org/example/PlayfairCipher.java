@@ -2,22 +2,50 @@ package org.example;
 
 import java.util.*;
 
+import static org.example.Utils.getInputAndProcess;
+
 public class PlayfairCipher {
 
     private final char[][] cipherSquare = new char[5][5];
     private final Map<Character, Integer> charToRow = new HashMap<>();
     private final Map<Character, Integer> charToCol = new HashMap<>();
 
-    public static void main(String[] args) {
-        String encryptedText = "LRIXH FESUI PDGKO PDKOQ EFTZD KHTIQ AIGCB XHMUA GKSEO FRHDP DLCXO QSYFR QOTFB HQIYA\n" +
-                "GHPDM XCFDG KIMZM DZGEF HTYMW GHQGC"; // The plaintext message to encode
+    // Bundled example, decrypted with --example
+    private static final String EXAMPLE_CIPHERTEXT = "LRIXH FESUI PDGKO PDKOQ EFTZD KHTIQ AIGCB XHMUA GKSEO FRHDP DLCXO QSYFR QOTFB HQIYA\n" +
+            "GHPDM XCFDG KIMZM DZGEF HTYMW GHQGC";
+    private static final String EXAMPLE_KEYWORD = "JAHODY";
 
+    public static void main(String[] args) {
+        String keyword = null;
+        boolean encrypt = false;
+        boolean example = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--keyword" -> keyword = args[++i];
+                case "--encrypt" -> encrypt = true;
+                case "--example" -> example = true;
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+        if (example) {
+            keyword = EXAMPLE_KEYWORD;
+        } else if (keyword == null) {
+            System.err.println("--keyword <keyword> is required (or --example)");
+            return;
+        }
 
         PlayfairCipher playfair = new PlayfairCipher();
-        playfair.createCipherSquare("JAHODY"); // Create the cipher square with the keyword
+        playfair.createCipherSquare(keyword); // Create the cipher square with the keyword
 
-        String decryptedText = playfair.decrypt(encryptedText);
-        System.out.println("Decrypted Text: " + decryptedText);
+        String text = example ? EXAMPLE_CIPHERTEXT : getInputAndProcess();
+        if (encrypt) {
+            System.out.println("Encrypted Text: " + playfair.encrypt(text));
+        } else {
+            System.out.println("Decrypted Text: " + playfair.decrypt(text));
+        }
     }
 
     /**
@@ -26,10 +54,17 @@ public class PlayfairCipher {
      * @param keyword the keyword used to generate the cipher square
      */
     public void createCipherSquare(String keyword) {
+        createCipherSquare(keyword, true);
+    }
+
+    // Same as createCipherSquare(String), optionally without printing the square
+    void createCipherSquare(String keyword, boolean print) {
         String processedKey = processKeyword(keyword);
         fillCipherSquare(processedKey);
         buildCharPositionMaps();
-        printCipherSquare();
+        if (print) {
+            printCipherSquare();
+        }
     }
 
     /**
@@ -40,7 +75,7 @@ public class PlayfairCipher {
      * @return the processed keyword
      */
     private String processKeyword(String keyword) {
-        keyword = keyword.toUpperCase().replaceAll("[^A-Z]", "").replace("J", "I");
+        keyword = Alphabet.LATIN_25.normalise(keyword);
 
         // Use a LinkedHashSet to maintain insertion order and remove duplicates
         Set<Character> keyChars = new LinkedHashSet<>();
@@ -96,6 +131,60 @@ public class PlayfairCipher {
         }
     }
 
+    /**
+     * Encrypts the plaintext using the Playfair cipher rules. 'J' is replaced by 'I', an 'X' is
+     * inserted between two equal letters of a digraph and appended if the length is odd.
+     *
+     * @param plaintext the plaintext message
+     * @return the encrypted ciphertext
+     */
+    public String encrypt(String plaintext) {
+        plaintext = Alphabet.LATIN_25.normalise(plaintext);
+
+        // Split into digraphs, separating doubled letters
+        StringBuilder prepared = new StringBuilder();
+        for (int i = 0; i < plaintext.length(); i++) {
+            char c = plaintext.charAt(i);
+            if (prepared.length() % 2 == 1 && prepared.charAt(prepared.length() - 1) == c) {
+                prepared.append(c == 'X' ? 'Q' : 'X');
+            }
+            prepared.append(c);
+        }
+        if (prepared.length() % 2 != 0) {
+            prepared.append(prepared.charAt(prepared.length() - 1) == 'X' ? 'Q' : 'X');
+        }
+
+        StringBuilder ciphertext = new StringBuilder();
+        for (int i = 0; i < prepared.length(); i += 2) {
+            char first = prepared.charAt(i);
+            char second = prepared.charAt(i + 1);
+
+            int row1 = charToRow.get(first);
+            int col1 = charToCol.get(first);
+            int row2 = charToRow.get(second);
+            int col2 = charToCol.get(second);
+
+            if (row1 == row2) {
+                // Same row - replace with letters to the right
+                col1 = (col1 + 1) % 5;
+                col2 = (col2 + 1) % 5;
+            } else if (col1 == col2) {
+                // Same column - replace with letters below
+                row1 = (row1 + 1) % 5;
+                row2 = (row2 + 1) % 5;
+            } else {
+                // Rectangle - swap columns
+                int temp = col1;
+                col1 = col2;
+                col2 = temp;
+            }
+
+            ciphertext.append(cipherSquare[row1][col1]).append(cipherSquare[row2][col2]);
+        }
+
+        return ciphertext.toString();
+    }
+
     /**
      * Decrypts the ciphertext using the Playfair cipher rules.
      *
@@ -104,7 +193,7 @@ public class PlayfairCipher {
      */
     public String decrypt(String ciphertext) {
         // Preprocess the ciphertext
-        ciphertext = ciphertext.toUpperCase().replaceAll("[^A-Z]", "").replace("J", "I");
+        ciphertext = Alphabet.LATIN_25.normalise(ciphertext);
 
         // Ensure the ciphertext length is even
         if (ciphertext.length() % 2 != 0) {
@@ -153,6 +242,96 @@ public class PlayfairCipher {
     }
 
 
+    /**
+     * Decrypts several messages encrypted with the same square. Each message is decrypted on
+     * its own, so no digraph spans two messages; a message of odd length is padded with 'X'.
+     *
+     * @param ciphertext the encrypted messages
+     * @return the decrypted messages
+     */
+    public SegmentedText decrypt(SegmentedText ciphertext) {
+        byte[] square = new byte[25];
+        for (int i = 0; i < 25; i++) {
+            square[i] = (byte) (cipherSquare[i / 5][i % 5] - 'A');
+        }
+        int[] offsets = new int[ciphertext.segmentCount() + 1];
+        byte[] plaintext = new byte[ciphertext.length() + ciphertext.segmentCount()];
+        int length = decrypt(square, positions(square), ciphertext, plaintext, offsets);
+        return new SegmentedText(Arrays.copyOf(plaintext, length), offsets);
+    }
+
+    /**
+     * Scores this square as the key of all the given messages together.
+     *
+     * @param ciphertext  the encrypted messages
+     * @param ngramScorer the scorer
+     * @return the joint n-gram score of the decryptions
+     */
+    public double score(SegmentedText ciphertext, NGramScorer ngramScorer) {
+        return ngramScorer.score(decrypt(ciphertext));
+    }
+
+    /**
+     * Position (row * 5 + column) of every letter code in a square given as 25 letter codes
+     * row by row; 'J' takes the position of 'I'.
+     */
+    static int[] positions(byte[] square) {
+        int[] positions = new int[26];
+        fillPositions(square, positions);
+        return positions;
+    }
+
+    static void fillPositions(byte[] square, int[] positions) {
+        for (int i = 0; i < 25; i++) {
+            positions[square[i]] = i;
+        }
+        positions['J' - 'A'] = positions['I' - 'A'];
+    }
+
+    /**
+     * Decrypts segmented letter codes with a square given as 25 letter codes, without
+     * allocating. Each segment is decrypted on its own and padded with 'X' if its length is odd.
+     *
+     * @param square     the square, row by row
+     * @param positions  positions of the letters, see {@link #positions(byte[])}
+     * @param ciphertext the encrypted messages
+     * @param plaintext  receives the decryption, needs room for length + segment count codes
+     * @param offsets    receives the segment offsets of the decryption
+     * @return the length of the decryption
+     */
+    static int decrypt(byte[] square, int[] positions, SegmentedText ciphertext, byte[] plaintext, int[] offsets) {
+        int length = 0;
+        for (int s = 0; s < ciphertext.segmentCount(); s++) {
+            offsets[s] = length;
+            int end = ciphertext.end(s);
+            for (int i = ciphertext.start(s); i < end; i += 2) {
+                int first = positions[ciphertext.codes[i]];
+                int second = positions[i + 1 < end ? ciphertext.codes[i + 1] : 'X' - 'A'];
+                int row1 = first / 5;
+                int col1 = first % 5;
+                int row2 = second / 5;
+                int col2 = second % 5;
+
+                if (row1 == row2) {
+                    col1 = (col1 + 4) % 5;
+                    col2 = (col2 + 4) % 5;
+                } else if (col1 == col2) {
+                    row1 = (row1 + 4) % 5;
+                    row2 = (row2 + 4) % 5;
+                } else {
+                    int temp = col1;
+                    col1 = col2;
+                    col2 = temp;
+                }
+
+                plaintext[length++] = square[row1 * 5 + col1];
+                plaintext[length++] = square[row2 * 5 + col2];
+            }
+        }
+        offsets[ciphertext.segmentCount()] = length;
+        return length;
+    }
+
     /**
      * Prints the cipher square.
      */
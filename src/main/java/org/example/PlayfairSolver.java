@@ -0,0 +1,223 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.example.Utils.getMessagesAndProcess;
+import static org.example.Utils.getSegmentedInput;
+
+/**
+ * Recovers a Playfair square with parallel tempering over square arrangements.
+ */
+public class PlayfairSolver {
+
+    /**
+     * Playfair squares as 25 letter codes row by row (no 'J').
+     */
+    static class KeyProblem implements SearchProblem<byte[]> {
+        private final SegmentedText ciphertext;
+        private final NGramScorer ngramScorer;
+        private final ThreadLocal<byte[]> plaintextBuffer;
+        private final ThreadLocal<int[]> offsetsBuffer;
+        private final ThreadLocal<int[]> positionsBuffer = ThreadLocal.withInitial(() -> new int[26]);
+
+        KeyProblem(SegmentedText ciphertext, NGramScorer ngramScorer) {
+            this.ciphertext = ciphertext;
+            this.ngramScorer = ngramScorer;
+            this.plaintextBuffer = ThreadLocal.withInitial(() -> new byte[ciphertext.length() + ciphertext.segmentCount()]);
+            this.offsetsBuffer = ThreadLocal.withInitial(() -> new int[ciphertext.segmentCount() + 1]);
+        }
+
+        @Override
+        public byte[] randomKey(Random random) {
+            byte[] square = new byte[25];
+            int index = 0;
+            for (int c = 0; c < 26; c++) {
+                if (c != 'J' - 'A') {
+                    square[index++] = (byte) c;
+                }
+            }
+            for (int i = square.length - 1; i > 0; i--) {
+                swap(square, i, random.nextInt(i + 1));
+            }
+            return square;
+        }
+
+        // Mostly swap two letters; occasionally rearrange whole rows or columns
+        @Override
+        public byte[] mutate(byte[] key, Random random) {
+            byte[] square = key.clone();
+            int operation = random.nextInt(50);
+            if (operation == 0) {
+                swapRows(square, random.nextInt(5), random.nextInt(5));
+            } else if (operation == 1) {
+                swapColumns(square, random.nextInt(5), random.nextInt(5));
+            } else if (operation == 2) {
+                for (int row = 0; row < 2; row++) {
+                    swapRows(square, row, 4 - row); // flip top to bottom
+                }
+            } else if (operation == 3) {
+                for (int col = 0; col < 2; col++) {
+                    swapColumns(square, col, 4 - col); // flip left to right
+                }
+            } else if (operation == 4) {
+                for (int i = 0; i < 12; i++) {
+                    swap(square, i, 24 - i); // rotate by 180 degrees
+                }
+            } else {
+                swap(square, random.nextInt(25), random.nextInt(25));
+            }
+            return square;
+        }
+
+        @Override
+        public double fitness(byte[] key) {
+            byte[] plaintext = plaintextBuffer.get();
+            int[] offsets = offsetsBuffer.get();
+            int[] positions = positionsBuffer.get();
+            PlayfairCipher.fillPositions(key, positions);
+            PlayfairCipher.decrypt(key, positions, ciphertext, plaintext, offsets);
+            return ngramScorer.score(plaintext, offsets);
+        }
+
+        @Override
+        public String describe(byte[] key) {
+            StringBuilder sb = new StringBuilder(25);
+            for (byte c : key) {
+                sb.append((char) ('A' + c));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String decrypt(byte[] key) {
+            PlayfairCipher playfair = new PlayfairCipher();
+            playfair.createCipherSquare(describe(key), false);
+            return playfair.decrypt(ciphertext).toString();
+        }
+
+        private static void swapRows(byte[] square, int a, int b) {
+            for (int col = 0; col < 5; col++) {
+                swap(square, a * 5 + col, b * 5 + col);
+            }
+        }
+
+        private static void swapColumns(byte[] square, int a, int b) {
+            for (int row = 0; row < 5; row++) {
+                swap(square, row * 5 + a, row * 5 + b);
+            }
+        }
+
+        private static void swap(byte[] arr, int i, int j) {
+            byte temp = arr[i];
+            arr[i] = arr[j];
+            arr[j] = temp;
+        }
+    }
+
+    /**
+     * Recovered square and the decryption it gives.
+     */
+    public static class Result {
+        public final String square;
+        public final double score;
+        public final String decryption;
+        public final long evaluations;
+
+        Result(String square, double score, String decryption, long evaluations) {
+            this.square = square;
+            this.score = score;
+            this.decryption = decryption;
+            this.evaluations = evaluations;
+        }
+    }
+
+    private final NGramScorer ngramScorer;
+    private int replicas = 8;
+    private int rounds = 200;
+    private int stepsPerRound = 2000;
+    private long seed = System.nanoTime();
+    private SearchControl control = SearchControl.NONE;
+    private SearchMonitor monitor = SearchMonitor.NONE;
+
+    // Squares hold the Latin letters, so the model has to be one over A-Z
+    public PlayfairSolver(NGramScorer ngramScorer) {
+        if (!ngramScorer.alphabet().sameCodes(Alphabet.LATIN_26)) {
+            throw new IllegalArgumentException("Playfair needs an A-Z model, not " + ngramScorer.alphabet() + ".");
+        }
+        this.ngramScorer = ngramScorer;
+    }
+
+    public void setBudget(int replicas, int rounds, int stepsPerRound) {
+        this.replicas = replicas;
+        this.rounds = rounds;
+        this.stepsPerRound = stepsPerRound;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setControl(SearchControl control) {
+        this.control = control;
+    }
+
+    public void setMonitor(SearchMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    public Result solve(String ciphertext) {
+        return solve(SegmentedText.of(ciphertext));
+    }
+
+    // Several messages under the same square are searched jointly
+    public Result solve(SegmentedText ciphertext) {
+        ngramScorer.checkAlphabet(ciphertext);
+        double maxTemperature = ParallelTempering.defaultMaxTemperature(ciphertext.length());
+        double minTemperature = maxTemperature / 40.0;
+
+        KeyProblem problem = new KeyProblem(ciphertext, ngramScorer);
+        ParallelTempering<byte[]> tempering = new ParallelTempering<>(problem, replicas, minTemperature,
+                maxTemperature, stepsPerRound, rounds, ParallelTempering.defaultThreads(replicas), seed);
+        tempering.setControl(control);
+        tempering.setMonitor(monitor);
+        ParallelTempering.Result<byte[]> best = tempering.run();
+
+        return new Result(problem.describe(best.key), best.fitness, problem.decrypt(best.key), best.evaluations);
+    }
+
+    public static void main(String[] args) {
+        boolean multipleMessages = false;
+        PlayfairSolver solver;
+        try {
+            solver = new PlayfairSolver(SubstitutionWithKeywordSolver.loadNGramScorer());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error loading N-gram scorer: " + e.getMessage());
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--messages" -> multipleMessages = true;
+                case "--replicas" -> solver.replicas = Integer.parseInt(args[++i]);
+                case "--rounds" -> solver.rounds = Integer.parseInt(args[++i]);
+                case "--steps" -> solver.stepsPerRound = Integer.parseInt(args[++i]);
+                case "--seed" -> solver.setSeed(Long.parseLong(args[++i]));
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        SegmentedText ciphertext = multipleMessages
+                ? SegmentedText.of(getMessagesAndProcess())
+                : getSegmentedInput();
+        Result result = solver.solve(ciphertext);
+
+        PlayfairCipher playfair = new PlayfairCipher();
+        playfair.createCipherSquare(result.square);
+        System.out.println("Score: " + result.score);
+        System.out.println("Keys evaluated: " + result.evaluations);
+        System.out.println("Decrypted Text: " + result.decryption);
+    }
+}
@@ -0,0 +1,230 @@
+package org.example;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Snapshot of a key search that can be written to a compact binary file and resumed later.
+ * The random stream is not stored directly: searches draw a fresh generator per chunk from
+ * the seed, so the seed plus the chunk cursor reproduce it exactly.
+ */
+public class SearchCheckpoint {
+
+    private static final int MAGIC = 0x4B534243; // "KSBC"
+    private static final int VERSION = 1;
+
+    long seed;
+    int maxKeywordLength;
+    int numIterations;
+    int topResultsLimit;
+    int ciphertextHash;
+
+    // Cursor: keyword length being searched and the next chunk to run for it
+    int keywordLength;
+    long nextChunk;
+
+    // Annealing temperature, NaN for searches that do not use one
+    double temperature = Double.NaN;
+
+    // Top results of the finished keyword lengths and of the current one
+    List<Entry> completedResults = new ArrayList<>();
+    List<Entry> currentResults = new ArrayList<>();
+
+    KeywordSet visited;
+
+    /**
+     * A keyword and its score; everything else in a result can be rebuilt from the keyword.
+     */
+    static class Entry {
+        final String keyword;
+        final double score;
+
+        Entry(String keyword, double score) {
+            this.keyword = keyword;
+            this.score = score;
+        }
+    }
+
+    // Deep copy so the search can keep mutating its state while the copy is written
+    SearchCheckpoint copy() {
+        SearchCheckpoint copy = new SearchCheckpoint();
+        copy.seed = seed;
+        copy.maxKeywordLength = maxKeywordLength;
+        copy.numIterations = numIterations;
+        copy.topResultsLimit = topResultsLimit;
+        copy.ciphertextHash = ciphertextHash;
+        copy.keywordLength = keywordLength;
+        copy.nextChunk = nextChunk;
+        copy.temperature = temperature;
+        copy.completedResults = new ArrayList<>(completedResults);
+        copy.currentResults = new ArrayList<>(currentResults);
+        copy.visited = visited == null ? null : visited.copy();
+        return copy;
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and atomically moves it over the target,
+     * so an interrupted write never destroys the previous checkpoint.
+     *
+     * @param path the checkpoint file
+     */
+    public void save(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeInt(maxKeywordLength);
+            out.writeInt(numIterations);
+            out.writeInt(topResultsLimit);
+            out.writeInt(ciphertextHash);
+            out.writeInt(keywordLength);
+            out.writeLong(nextChunk);
+            out.writeDouble(temperature);
+            writeEntries(out, completedResults);
+            writeEntries(out, currentResults);
+            out.writeBoolean(visited != null);
+            if (visited != null) {
+                visited.write(out);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #save(Path)}.
+     *
+     * @param path the checkpoint file
+     * @return the loaded checkpoint
+     */
+    public static SearchCheckpoint load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + path);
+            }
+            SearchCheckpoint checkpoint = new SearchCheckpoint();
+            checkpoint.seed = in.readLong();
+            checkpoint.maxKeywordLength = in.readInt();
+            checkpoint.numIterations = in.readInt();
+            checkpoint.topResultsLimit = in.readInt();
+            checkpoint.ciphertextHash = in.readInt();
+            checkpoint.keywordLength = in.readInt();
+            checkpoint.nextChunk = in.readLong();
+            checkpoint.temperature = in.readDouble();
+            checkpoint.completedResults = readEntries(in);
+            checkpoint.currentResults = readEntries(in);
+            if (in.readBoolean()) {
+                checkpoint.visited = KeywordSet.read(in);
+            }
+            return checkpoint;
+        }
+    }
+
+    private static void writeEntries(DataOutputStream out, List<Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.keyword);
+            out.writeDouble(entry.score);
+        }
+    }
+
+    private static List<Entry> readEntries(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String keyword = in.readUTF();
+            entries.add(new Entry(keyword, in.readDouble()));
+        }
+        return entries;
+    }
+
+    /**
+     * Set of already tried keywords, keyed by their rank, the base-radix value in their
+     * alphabet. Short keywords use a bit set indexed directly by rank, longer ones fall back to
+     * a hash set.
+     */
+    static class KeywordSet {
+        private static final long MAX_BITSET_SIZE = 308915776L; // 26^6, keywords of up to 6 letters A-Z
+
+        private final BitSet bits;
+        private final Set<Long> ranks;
+
+        KeywordSet(int keywordLength, Alphabet alphabet) {
+            if (SubstitutionWithKeywordSolver.keywordRankCount(keywordLength, alphabet) <= MAX_BITSET_SIZE) {
+                bits = new BitSet();
+                ranks = null;
+            } else {
+                bits = null;
+                ranks = new HashSet<>();
+            }
+        }
+
+        private KeywordSet(BitSet bits, Set<Long> ranks) {
+            this.bits = bits;
+            this.ranks = ranks;
+        }
+
+        // Returns true if the keyword of this rank was not in the set yet
+        boolean add(long rank) {
+            if (bits != null) {
+                if (bits.get((int) rank)) {
+                    return false;
+                }
+                bits.set((int) rank);
+                return true;
+            }
+            return ranks.add(rank);
+        }
+
+        static long rank(String keyword, Alphabet alphabet) {
+            long rank = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                rank = rank * alphabet.size() + alphabet.code(keyword.charAt(i));
+            }
+            return rank;
+        }
+
+        KeywordSet copy() {
+            return new KeywordSet(bits == null ? null : (BitSet) bits.clone(),
+                    ranks == null ? null : new HashSet<>(ranks));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeBoolean(bits != null);
+            if (bits != null) {
+                long[] words = bits.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            } else {
+                out.writeInt(ranks.size());
+                for (long rank : ranks) {
+                    out.writeLong(rank);
+                }
+            }
+        }
+
+        static KeywordSet read(DataInputStream in) throws IOException {
+            boolean isBitSet = in.readBoolean();
+            int size = in.readInt();
+            if (isBitSet) {
+                long[] words = new long[size];
+                for (int i = 0; i < size; i++) {
+                    words[i] = in.readLong();
+                }
+                return new KeywordSet(BitSet.valueOf(words), null);
+            }
+            Set<Long> ranks = new HashSet<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                ranks.add(in.readLong());
+            }
+            return new KeywordSet(null, ranks);
+        }
+    }
+}
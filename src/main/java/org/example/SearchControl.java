@@ -0,0 +1,15 @@
+package org.example;
+
+/**
+ * Called by long searches at iteration boundaries (a chunk of random keywords, a tempering
+ * round), where they hold no locks and can be paused. {@link JobScheduler} uses it to
+ * time-slice searches: the call blocks while other jobs get the worker.
+ */
+public interface SearchControl {
+
+    SearchControl NONE = fractionDone -> {
+    };
+
+    // fractionDone: the share of the search's budget used so far, 0 to 1
+    void iterationBoundary(double fractionDone);
+}
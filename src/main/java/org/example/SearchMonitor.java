@@ -0,0 +1,29 @@
+package org.example;
+
+import java.util.function.Supplier;
+
+/**
+ * Watches a search from the inside. Solvers count the candidate keys their search steps try
+ * and report every key that beats the best one the reporting thread has seen. Parallel
+ * searches report from several threads at once, so implementations must be thread-safe.
+ * {@link SolveRateBenchmark} uses it to compare search effort between solvers and to time
+ * when the correct key first comes out on top.
+ */
+public interface SearchMonitor {
+
+    SearchMonitor NONE = new SearchMonitor() {
+        @Override
+        public void candidates(long count) {
+        }
+
+        @Override
+        public void improved(double score, Supplier<String> decryption) {
+        }
+    };
+
+    // Adds to the number of candidate keys tried, reported in batches by the search loops
+    void candidates(long count);
+
+    // A better key was found; its decryption is only built if the monitor asks for it
+    void improved(double score, Supplier<String> decryption);
+}
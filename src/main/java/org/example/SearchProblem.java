@@ -0,0 +1,27 @@
+package org.example;
+
+import java.util.Random;
+
+/**
+ * A key space searched by {@link ParallelTempering}: how to draw a random key, how to
+ * mutate one and how fit a key is. Replicas call these methods from several threads at
+ * once, so implementations must not share mutable scratch state between calls.
+ *
+ * @param <K> the key representation
+ */
+public interface SearchProblem<K> {
+
+    K randomKey(Random random);
+
+    // Returns a new key close to the given one; the given key must not be modified
+    K mutate(K key, Random random);
+
+    // Higher is better, typically the n-gram score of the decryption
+    double fitness(K key);
+
+    // Human-readable form of the key for progress output
+    String describe(K key);
+
+    // Plaintext the key gives, for a {@link SearchMonitor}
+    String decrypt(K key);
+}
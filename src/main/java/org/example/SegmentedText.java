@@ -0,0 +1,137 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Several messages stored once as symbol codes of an alphabet (0 = A ... 25 = Z for the
+ * default A-Z) in a shared array. Segment i spans codes[offsets[i], offsets[i + 1]). Scorers
+ * and decryptors work segment by segment, so nothing spans the boundary between two messages.
+ */
+public class SegmentedText {
+
+    private static final String SEGMENT_SEPARATOR = " | ";
+
+    final byte[] codes;
+    final int[] offsets;
+    final Alphabet alphabet;
+
+    SegmentedText(byte[] codes, int[] offsets) {
+        this(codes, offsets, Alphabet.LATIN_26);
+    }
+
+    SegmentedText(byte[] codes, int[] offsets, Alphabet alphabet) {
+        this.codes = codes;
+        this.offsets = offsets;
+        this.alphabet = alphabet;
+    }
+
+    // A single message
+    public static SegmentedText of(String text) {
+        return of(Collections.singletonList(text));
+    }
+
+    public static SegmentedText of(String text, Alphabet alphabet) {
+        return of(Collections.singletonList(text), alphabet);
+    }
+
+    // Messages in the letters A-Z
+    public static SegmentedText of(List<String> messages) {
+        return of(messages, Alphabet.LATIN_26);
+    }
+
+    /**
+     * Builds the shared array from the given messages. Anything the alphabet does not read
+     * is dropped.
+     *
+     * @param messages the messages
+     * @param alphabet the alphabet of the codes
+     * @return the segmented text
+     */
+    public static SegmentedText of(List<String> messages, Alphabet alphabet) {
+        int total = 0;
+        for (String message : messages) {
+            total += message.length();
+        }
+        byte[] codes = new byte[total];
+        int[] offsets = new int[messages.size() + 1];
+        int length = 0;
+        for (int s = 0; s < messages.size(); s++) {
+            offsets[s] = length;
+            String message = messages.get(s);
+            for (int i = 0; i < message.length(); i++) {
+                int c = alphabet.code(message.charAt(i));
+                if (c >= 0) {
+                    codes[length++] = (byte) c;
+                }
+            }
+        }
+        offsets[messages.size()] = length;
+        return new SegmentedText(Arrays.copyOf(codes, length), offsets, alphabet);
+    }
+
+    public int segmentCount() {
+        return offsets.length - 1;
+    }
+
+    // Total number of letters over all segments
+    public int length() {
+        return offsets[offsets.length - 1];
+    }
+
+    public int start(int segment) {
+        return offsets[segment];
+    }
+
+    public int end(int segment) {
+        return offsets[segment + 1];
+    }
+
+    // The letters of one segment as a string
+    public String segment(int segment) {
+        return alphabet.decode(codes, offsets[segment], offsets[segment + 1]);
+    }
+
+    /**
+     * Renders symbol codes laid out like this text (e.g. a decryption of it) with the
+     * segments separated by " | ".
+     *
+     * @param text codes of this text's alphabet with the same offsets as this text
+     * @return the rendered text
+     */
+    public String decode(byte[] text) {
+        StringBuilder sb = new StringBuilder(text.length + SEGMENT_SEPARATOR.length() * segmentCount());
+        for (int s = 0; s < segmentCount(); s++) {
+            if (s > 0) {
+                sb.append(SEGMENT_SEPARATOR);
+            }
+            for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                sb.append(alphabet.symbol(text[i]));
+            }
+        }
+        return sb.toString();
+    }
+
+    // Letter codes of A-Z as a string
+    static String decode(byte[] text, int from, int to) {
+        return Alphabet.LATIN_26.decode(text, from, to);
+    }
+
+    @Override
+    public String toString() {
+        return decode(codes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SegmentedText)) {
+            return false;
+        }
+        SegmentedText other = (SegmentedText) o;
+        return alphabet == other.alphabet && Arrays.equals(codes, other.codes) && Arrays.equals(offsets, other.offsets);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(codes) + Arrays.hashCode(offsets);
+    }
+}
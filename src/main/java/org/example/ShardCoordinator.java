@@ -0,0 +1,298 @@
+package org.example;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.example.Utils.getInputAndProcess;
+
+/**
+ * Splits a keyword substitution search into leases and hands them to {@link ShardWorker}
+ * processes over a line-based socket protocol:
+ *
+ * <pre>
+ * worker: HELLO                      coordinator: CIPHERTEXT &lt;text&gt;
+ * worker: NEXT                       coordinator: LEASE &lt;id&gt; RANGE &lt;length&gt; &lt;fromRank&gt; &lt;toRank&gt; &lt;limit&gt;
+ *                                                 | LEASE &lt;id&gt; CHUNKS &lt;length&gt; &lt;iterations&gt; &lt;seed&gt; &lt;fromChunk&gt; &lt;toChunk&gt; &lt;limit&gt;
+ *                                                 | WAIT | DONE
+ * worker: RESULT &lt;id&gt; &lt;n&gt;, then n lines "&lt;keyword&gt; &lt;score&gt;"     coordinator: OK
+ * </pre>
+ *
+ * Keyword lengths whose whole key space is smaller than the iteration budget are enumerated by
+ * rank range, longer ones are sampled by seeded chunk range. Leases held by a worker whose
+ * connection drops, or which are not returned before their deadline, are issued again. A
+ * result is accepted from any worker as long as its lease is not done yet.
+ */
+public class ShardCoordinator {
+
+    private static class Lease {
+        final int id;
+        final int keywordLength;
+        final String spec;
+        long deadline;
+        // Connection the lease is currently issued to, null while it waits in the queue
+        Object holder;
+
+        Lease(int id, int keywordLength, String spec) {
+            this.id = id;
+            this.keywordLength = keywordLength;
+            this.spec = spec;
+        }
+    }
+
+    private final String ciphertext;
+    private final int topResultsLimit;
+    private final long leaseTimeoutMillis;
+
+    private final Deque<Lease> queue = new ArrayDeque<>();
+    private final Map<Integer, Lease> outstanding = new HashMap<>();
+    // Every lease not completed yet, queued or outstanding
+    private final Map<Integer, Lease> pending = new HashMap<>();
+    private final Map<Integer, List<SearchCheckpoint.Entry>> resultsByLength = new TreeMap<>();
+    private int remaining;
+
+    public ShardCoordinator(String ciphertext, int maxKeywordLength, int numIterations, int topResultsLimit,
+                            int leasesPerLength, long seed, long leaseTimeoutMillis) {
+        this.ciphertext = ciphertext;
+        this.topResultsLimit = topResultsLimit;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+
+        int id = 0;
+        for (int length = 1; length <= maxKeywordLength; length++) {
+            long rankCount = SubstitutionWithKeywordSolver.keywordRankCount(length, Alphabet.selected());
+            boolean exhaustive = rankCount <= numIterations / length;
+            long total = exhaustive ? rankCount : SubstitutionWithKeywordSolver.chunkCount(length, numIterations);
+            long parts = Math.max(1, Math.min(leasesPerLength, total));
+            for (long part = 0; part < parts; part++) {
+                long from = total * part / parts;
+                long to = total * (part + 1) / parts;
+                String spec = exhaustive
+                        ? "RANGE " + length + " " + from + " " + to + " " + topResultsLimit
+                        : "CHUNKS " + length + " " + numIterations + " " + seed + " " + from + " " + to + " " + topResultsLimit;
+                Lease lease = new Lease(id++, length, spec);
+                queue.add(lease);
+                pending.put(lease.id, lease);
+            }
+            resultsByLength.put(length, new ArrayList<>());
+        }
+        remaining = queue.size();
+    }
+
+    /**
+     * Accepts workers until every lease has been completed, then merges the top results per
+     * keyword length and runs the permutation stage locally.
+     *
+     * @param port          port to listen on
+     * @param spawnWorkers  number of worker JVMs to start on this machine
+     * @param solver        solver used for the permutation stage
+     * @return the final top results
+     */
+    public List<SubstitutionWithKeywordSolver.Result> run(int port, int spawnWorkers,
+                                                          SubstitutionWithKeywordSolver solver) throws IOException {
+        List<Process> workers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            server.setSoTimeout(1000);
+            System.out.println("Coordinator listening on port " + server.getLocalPort() + " with " + remaining + " leases");
+            for (int i = 0; i < spawnWorkers; i++) {
+                workers.add(spawnWorker(server.getLocalPort()));
+            }
+
+            while (!isFinished()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread handler = new Thread(() -> handle(socket), "shard-connection");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (SocketTimeoutException e) {
+                    // Loop around to check whether all leases are done
+                }
+            }
+        } finally {
+            for (Process worker : workers) {
+                try {
+                    if (!worker.waitFor(5, java.util.concurrent.TimeUnit.SECONDS)) {
+                        worker.destroy();
+                    }
+                } catch (InterruptedException e) {
+                    worker.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        List<SearchCheckpoint.Entry> merged = new ArrayList<>();
+        for (List<SearchCheckpoint.Entry> entries : resultsByLength.values()) {
+            merged.addAll(entries);
+        }
+        System.out.println("Evaluating permutations of top results...");
+        SegmentedText text = SegmentedText.of(ciphertext, Alphabet.selected());
+        return solver.evaluatePermutations(solver.toResults(text, merged), text, topResultsLimit);
+    }
+
+    private Process spawnWorker(int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-D" + Alphabet.PROPERTY + "=" + Alphabet.selected().name(),
+                ShardWorker.class.getName(), "localhost", Integer.toString(port));
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    // Serve one worker connection; any lease it still holds when the connection ends is re-issued
+    private void handle(Socket socket) {
+        Set<Lease> held = new HashSet<>();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            if (!"HELLO".equals(in.readLine())) {
+                return;
+            }
+            out.println("CIPHERTEXT " + ciphertext);
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts[0].equals("NEXT")) {
+                    Lease lease = nextLease(socket);
+                    if (lease != null) {
+                        held.add(lease);
+                        out.println("LEASE " + lease.id + " " + lease.spec);
+                    } else if (isFinished()) {
+                        out.println("DONE");
+                        return;
+                    } else {
+                        out.println("WAIT");
+                    }
+                } else if (parts[0].equals("RESULT")) {
+                    int id = Integer.parseInt(parts[1]);
+                    int count = Integer.parseInt(parts[2]);
+                    List<SearchCheckpoint.Entry> entries = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        String[] entry = in.readLine().split(" ");
+                        entries.add(new SearchCheckpoint.Entry(entry[0], Double.parseDouble(entry[1])));
+                    }
+                    held.removeIf(lease -> lease.id == id);
+                    complete(id, entries);
+                    out.println("OK");
+                } else {
+                    System.err.println("Unexpected message from worker: " + line);
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Worker connection lost: " + e.getMessage());
+        } finally {
+            release(socket, held);
+        }
+    }
+
+    private synchronized Lease nextLease(Object holder) {
+        long now = System.currentTimeMillis();
+        // Expired leases go back to the front of the queue
+        for (Iterator<Lease> it = outstanding.values().iterator(); it.hasNext(); ) {
+            Lease lease = it.next();
+            if (lease.deadline < now) {
+                System.out.println("Lease " + lease.id + " expired, re-issuing");
+                it.remove();
+                lease.holder = null;
+                queue.addFirst(lease);
+            }
+        }
+        Lease lease = queue.poll();
+        if (lease != null) {
+            lease.deadline = now + leaseTimeoutMillis;
+            lease.holder = holder;
+            outstanding.put(lease.id, lease);
+        }
+        return lease;
+    }
+
+    // A late result still counts if the lease expired but nobody else has completed it
+    private synchronized void complete(int id, List<SearchCheckpoint.Entry> entries) {
+        Lease lease = pending.remove(id);
+        if (lease == null) {
+            return; // Already completed by another worker after a re-issue
+        }
+        if (outstanding.remove(id) == null) {
+            queue.remove(lease);
+        }
+        List<SearchCheckpoint.Entry> merged = resultsByLength.get(lease.keywordLength);
+        for (SearchCheckpoint.Entry entry : entries) {
+            if (merged.stream().noneMatch(e -> e.keyword.equals(entry.keyword))) {
+                merged.add(entry);
+            }
+        }
+        merged.sort(Comparator.comparingDouble(e -> -e.score));
+        while (merged.size() > topResultsLimit) {
+            merged.remove(merged.size() - 1);
+        }
+        remaining--;
+        System.out.println("Lease " + id + " done, " + remaining + " remaining");
+    }
+
+    // Re-queue only the leases the connection still holds, not ones that expired and went to another worker
+    private synchronized void release(Object holder, Collection<Lease> leases) {
+        for (Lease lease : leases) {
+            if (lease.holder == holder && outstanding.remove(lease.id) != null) {
+                System.out.println("Lease " + lease.id + " lost, re-issuing");
+                lease.holder = null;
+                queue.addFirst(lease);
+            }
+        }
+    }
+
+    private synchronized boolean isFinished() {
+        return remaining == 0;
+    }
+
+    public static void main(String[] args) {
+        int port = 7077;
+        int spawnWorkers = 0;
+        int leasesPerLength = 16;
+        long leaseTimeoutSeconds = 600;
+        long seed = System.nanoTime();
+        int maxKeywordLength = 4;
+        int numIterations = 100000000;
+        int topResultsLimit = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--workers" -> spawnWorkers = Integer.parseInt(args[++i]);
+                case "--leases" -> leasesPerLength = Integer.parseInt(args[++i]);
+                case "--lease-timeout" -> leaseTimeoutSeconds = Long.parseLong(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--max-keyword-length" -> maxKeywordLength = Integer.parseInt(args[++i]);
+                case "--iterations" -> numIterations = Integer.parseInt(args[++i]);
+                case "--top" -> topResultsLimit = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        try {
+            NGramScorer ngramScorer = SubstitutionWithKeywordSolver.loadNGramScorer();
+            SubstitutionWithKeywordSolver solver = new SubstitutionWithKeywordSolver(ngramScorer);
+            String ciphertext = getInputAndProcess();
+
+            ShardCoordinator coordinator = new ShardCoordinator(ciphertext, maxKeywordLength, numIterations,
+                    topResultsLimit, leasesPerLength, seed, leaseTimeoutSeconds * 1000);
+            List<SubstitutionWithKeywordSolver.Result> results = coordinator.run(port, spawnWorkers, solver);
+
+            System.out.println("\nTop results:");
+            for (int i = 0; i < results.size(); i++) {
+                SubstitutionWithKeywordSolver.Result result = results.get(i);
+                System.out.println("Result " + (i + 1) + ":");
+                System.out.println("Keyword: " + result.keyword);
+                System.out.println("Score: " + result.score);
+                System.out.println("Decrypted text: " + result.decryption);
+                System.out.println("--------------------------------");
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Worker side of {@link ShardCoordinator}: repeatedly asks for a lease, runs it with an ordinary
+ * {@link SubstitutionWithKeywordSolver} and sends back the top results.
+ */
+public class ShardWorker {
+
+    private final SubstitutionWithKeywordSolver solver;
+
+    public ShardWorker(SubstitutionWithKeywordSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Works on leases from the coordinator until it reports that everything is done.
+     *
+     * @param host coordinator host
+     * @param port coordinator port
+     */
+    public void run(String host, int port) throws IOException, InterruptedException {
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            out.println("HELLO");
+            String ciphertext = in.readLine().substring("CIPHERTEXT ".length());
+
+            while (true) {
+                out.println("NEXT");
+                String line = in.readLine();
+                if (line == null || line.equals("DONE")) {
+                    return;
+                }
+                if (line.equals("WAIT")) {
+                    Thread.sleep(1000);
+                    continue;
+                }
+
+                String[] parts = line.split(" ");
+                int id = Integer.parseInt(parts[1]);
+                List<SubstitutionWithKeywordSolver.Result> results;
+                if (parts[2].equals("RANGE")) {
+                    results = solver.searchKeywordRange(ciphertext, Integer.parseInt(parts[3]),
+                            Long.parseLong(parts[4]), Long.parseLong(parts[5]), Integer.parseInt(parts[6]));
+                } else {
+                    results = solver.searchChunks(ciphertext, Integer.parseInt(parts[3]), Integer.parseInt(parts[4]),
+                            Long.parseLong(parts[5]), Long.parseLong(parts[6]), Long.parseLong(parts[7]),
+                            Integer.parseInt(parts[8]));
+                }
+
+                out.println("RESULT " + id + " " + results.size());
+                for (SubstitutionWithKeywordSolver.Result result : results) {
+                    out.println(result.keyword + " " + result.score);
+                }
+                in.readLine(); // OK
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: ShardWorker <host> <port>");
+            return;
+        }
+        try {
+            NGramScorer ngramScorer = SubstitutionWithKeywordSolver.loadNGramScorer();
+            new ShardWorker(new SubstitutionWithKeywordSolver(ngramScorer)).run(args[0], Integer.parseInt(args[1]));
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end benchmark: generates a seeded known-key corpus, runs the solvers on it and
+ * writes success rate, time to the correct key and candidates evaluated per cipher and
+ * length bucket as a JSON report that can be diffed between releases.
+ */
+public class SolveRateBenchmark {
+
+    private final NGramScorer ngramScorer;
+    private final String[] ngramFiles;
+    private final long seed;
+    private final int[] lengths;
+    private final int samplesPerLength;
+    private final int maxKeywordLength;
+    private final int numIterations;
+
+    /**
+     * Aggregated results of one cipher and length bucket.
+     */
+    static class Bucket {
+        final CorpusGenerator.Cipher cipher;
+        final int length;
+        int samples;
+        int successes;
+        long totalSolveNanos;
+        long timeToCorrectNanos;
+        long totalCandidates;
+
+        Bucket(CorpusGenerator.Cipher cipher, int length) {
+            this.cipher = cipher;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Counts the search steps of one solve and notes when the correct decryption first
+     * becomes the best one the solver has reported.
+     */
+    static class SampleMonitor implements SearchMonitor {
+        private final String expectedDecryption;
+        private final long start = System.nanoTime();
+        private final LongAdder candidates = new LongAdder();
+        private double bestScore = Double.NEGATIVE_INFINITY;
+        private long timeToCorrectNanos = -1;
+
+        SampleMonitor(String expectedDecryption) {
+            this.expectedDecryption = expectedDecryption;
+        }
+
+        @Override
+        public void candidates(long count) {
+            candidates.add(count);
+        }
+
+        @Override
+        public synchronized void improved(double score, Supplier<String> decryption) {
+            if (score <= bestScore) {
+                return;
+            }
+            bestScore = score;
+            if (timeToCorrectNanos < 0 && expectedDecryption.equals(decryption.get())) {
+                timeToCorrectNanos = System.nanoTime() - start;
+            }
+        }
+
+        long candidates() {
+            return candidates.sum();
+        }
+
+        // -1 if the correct decryption never led
+        synchronized long timeToCorrectNanos() {
+            return timeToCorrectNanos;
+        }
+    }
+
+    public SolveRateBenchmark(NGramScorer ngramScorer, String[] ngramFiles, long seed, int[] lengths,
+                              int samplesPerLength, int maxKeywordLength, int numIterations) {
+        this.ngramScorer = ngramScorer;
+        this.ngramFiles = ngramFiles;
+        this.seed = seed;
+        this.lengths = lengths;
+        this.samplesPerLength = samplesPerLength;
+        this.maxKeywordLength = maxKeywordLength;
+        this.numIterations = numIterations;
+    }
+
+    /**
+     * Runs every cipher that has a solver over the corpus and returns the buckets in
+     * cipher and length order.
+     *
+     * @param sourceText text the plaintexts are cut from
+     * @return the aggregated buckets
+     */
+    public List<Bucket> run(String sourceText) {
+        List<Bucket> buckets = new ArrayList<>();
+        for (CorpusGenerator.Cipher cipher : benchmarkedCiphers()) {
+            // Same seed per cipher so a cipher's corpus does not depend on which others run
+            CorpusGenerator generator = new CorpusGenerator(sourceText, seed, maxKeywordLength, ngramScorer.alphabet());
+            if (!generator.supports(cipher)) {
+                System.out.println("Skipping " + cipher + ": not defined for " + ngramScorer.alphabet());
+                continue;
+            }
+            Map<Integer, Bucket> byLength = new LinkedHashMap<>();
+            for (int length : lengths) {
+                byLength.put(length, new Bucket(cipher, length));
+            }
+
+            for (CorpusGenerator.Sample sample : generator.generate(cipher, lengths, samplesPerLength)) {
+                Bucket bucket = byLength.get(sample.length);
+
+                SampleMonitor monitor = new SampleMonitor(sample.expectedDecryption);
+                String decryption = solveQuietly(sample, monitor);
+                long elapsed = System.nanoTime() - monitor.start;
+
+                bucket.samples++;
+                bucket.totalSolveNanos += elapsed;
+                bucket.totalCandidates += monitor.candidates();
+                if (sample.expectedDecryption.equals(decryption)) {
+                    bucket.successes++;
+                    // Solvers report their final answer, so this only falls back for a tie on score
+                    long toCorrect = monitor.timeToCorrectNanos();
+                    bucket.timeToCorrectNanos += toCorrect < 0 ? elapsed : toCorrect;
+                }
+            }
+            buckets.addAll(byLength.values());
+            System.out.println("Finished " + cipher);
+        }
+        return buckets;
+    }
+
+    // Ciphers for which a solver exists
+    static List<CorpusGenerator.Cipher> benchmarkedCiphers() {
+        return List.of(CorpusGenerator.Cipher.AFFINE, CorpusGenerator.Cipher.KEYWORD_SUBSTITUTION,
+                CorpusGenerator.Cipher.PLAYFAIR, CorpusGenerator.Cipher.VIGENERE, CorpusGenerator.Cipher.AUTOKEY,
+                CorpusGenerator.Cipher.TRANSPOSITION, CorpusGenerator.Cipher.HOMOPHONIC);
+    }
+
+    static List<CorpusGenerator.Cipher> skippedCiphers() {
+        List<CorpusGenerator.Cipher> skipped = new ArrayList<>(List.of(CorpusGenerator.Cipher.values()));
+        skipped.removeAll(benchmarkedCiphers());
+        return skipped;
+    }
+
+    // The solvers report progress on stdout; keep it out of the benchmark output
+    private String solveQuietly(CorpusGenerator.Sample sample, SearchMonitor monitor) {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return solve(sample, monitor);
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    // Top-ranked decryption of the solver for the sample's cipher
+    private String solve(CorpusGenerator.Sample sample, SearchMonitor monitor) {
+        switch (sample.cipher) {
+            case AFFINE -> {
+                List<AffineCipherSolver.Result> results = AffineCipherSolver.solve(
+                        SegmentedText.of(sample.ciphertext, ngramScorer.alphabet()), ngramScorer, 1, monitor);
+                return results.isEmpty() ? null : results.get(0).plaintext;
+            }
+            case KEYWORD_SUBSTITUTION -> {
+                SubstitutionWithKeywordSolver solver = new SubstitutionWithKeywordSolver(ngramScorer);
+                solver.setSeed(seed);
+                solver.setMonitor(monitor);
+                List<SubstitutionWithKeywordSolver.Result> results =
+                        solver.solve(sample.ciphertext, maxKeywordLength, numIterations, 10);
+                return results.isEmpty() ? null : results.get(0).decryption;
+            }
+            case PLAYFAIR -> {
+                PlayfairSolver solver = new PlayfairSolver(ngramScorer);
+                solver.setSeed(seed);
+                solver.setMonitor(monitor);
+                return solver.solve(sample.ciphertext).decryption;
+            }
+            case VIGENERE -> {
+                VigenereSolver solver = new VigenereSolver(ngramScorer);
+                solver.setSeed(seed);
+                solver.setMonitor(monitor);
+                return solver.solve(sample.ciphertext).decryption;
+            }
+            case AUTOKEY -> {
+                AutokeySolver solver = new AutokeySolver(ngramScorer);
+                solver.setSeed(seed);
+                solver.setMonitor(monitor);
+                return solver.solve(sample.ciphertext).get(0).decryption;
+            }
+            case TRANSPOSITION -> {
+                ColumnarTranspositionSolver solver = new ColumnarTranspositionSolver(ngramScorer);
+                solver.setSeed(seed);
+                solver.setMonitor(monitor);
+                return solver.solve(sample.ciphertext).get(0).decryption;
+            }
+            case HOMOPHONIC -> {
+                HomophonicSolver solver = new HomophonicSolver(ngramScorer);
+                solver.setSeed(seed);
+                solver.setMonitor(monitor);
+                SymbolTokenizer tokenizer = new SymbolTokenizer(SymbolTokenizer.Mode.WHITESPACE, 0);
+                return solver.solve(tokenizer.tokenize(sample.ciphertext)).decryption;
+            }
+            default -> throw new IllegalArgumentException("No solver for " + sample.cipher);
+        }
+    }
+
+    /**
+     * Writes the report as JSON with one bucket per line, so consecutive reports diff cleanly.
+     *
+     * @param buckets the buckets returned by {@link #run(String)}
+     * @param path    the report file
+     */
+    public void writeReport(List<Bucket> buckets, Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.println("{");
+            out.println("  \"seed\": " + seed + ",");
+            out.println("  \"samplesPerLength\": " + samplesPerLength + ",");
+            out.println("  \"maxKeywordLength\": " + maxKeywordLength + ",");
+            out.println("  \"numIterations\": " + numIterations + ",");
+            out.println("  \"ngramFiles\": [" + joinQuoted(Arrays.asList(ngramFiles)) + "],");
+            List<String> skipped = new ArrayList<>();
+            for (CorpusGenerator.Cipher cipher : skippedCiphers()) {
+                skipped.add(cipher.name());
+            }
+            out.println("  \"skippedCiphers\": [" + joinQuoted(skipped) + "],");
+            out.println("  \"buckets\": [");
+            for (int i = 0; i < buckets.size(); i++) {
+                Bucket bucket = buckets.get(i);
+                double successRate = bucket.samples == 0 ? 0.0 : (double) bucket.successes / bucket.samples;
+                double meanSolveMs = bucket.samples == 0 ? 0.0 : bucket.totalSolveNanos / 1e6 / bucket.samples;
+                double meanTimeToCorrectKeyMs = bucket.successes == 0 ? 0.0 : bucket.timeToCorrectNanos / 1e6 / bucket.successes;
+                double meanCandidates = bucket.samples == 0 ? 0.0 : (double) bucket.totalCandidates / bucket.samples;
+                out.printf(Locale.ROOT, "    {\"cipher\": \"%s\", \"length\": %d, \"samples\": %d, \"successes\": %d, "
+                                + "\"successRate\": %.4f, \"meanTimeToCorrectKeyMs\": %.3f, \"meanSolveMs\": %.3f, "
+                                + "\"meanCandidatesEvaluated\": %.1f}%s%n",
+                        bucket.cipher, bucket.length, bucket.samples, bucket.successes, successRate,
+                        meanTimeToCorrectKeyMs, meanSolveMs, meanCandidates, i + 1 < buckets.size() ? "," : "");
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    private static String joinQuoted(List<String> values) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (String value : values) {
+            joiner.add("\"" + value + "\"");
+        }
+        return joiner.toString();
+    }
+
+    public static void main(String[] args) {
+        long seed = 1;
+        int[] lengths = {50, 100, 200, 400};
+        int samplesPerLength = 10;
+        int maxKeywordLength = 4;
+        int numIterations = 1000000;
+        String ngramDir = "src/main/resources/";
+        String[] ngramFiles = null; // every order present in the directory by default
+        String sourcePath = "src/main/resources/benchmark_plaintext.txt";
+        String outPath = "benchmark_report.json";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--lengths" -> lengths = CorpusGenerator.parseLengths(args[++i]);
+                case "--samples" -> samplesPerLength = Integer.parseInt(args[++i]);
+                case "--max-keyword-length" -> maxKeywordLength = Integer.parseInt(args[++i]);
+                case "--iterations" -> numIterations = Integer.parseInt(args[++i]);
+                case "--ngram-dir" -> ngramDir = args[++i];
+                case "--ngram-files" -> ngramFiles = args[++i].split(",");
+                case "--source" -> sourcePath = args[++i];
+                case "--out" -> outPath = args[++i];
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        try {
+            if (ngramFiles == null) {
+                ngramFiles = SubstitutionWithKeywordSolver.modelFiles(ngramDir, Alphabet.selected());
+            }
+            NGramScorer ngramScorer = ModelCache.defaultCache().load(ngramDir, ngramFiles, Alphabet.selected());
+            SolveRateBenchmark benchmark = new SolveRateBenchmark(ngramScorer, ngramFiles, seed, lengths,
+                    samplesPerLength, maxKeywordLength, numIterations);
+            List<Bucket> buckets = benchmark.run(CorpusGenerator.loadSource(sourcePath));
+            benchmark.writeReport(buckets, Paths.get(outPath));
+            System.out.println("Wrote benchmark report to " + outPath);
+        } catch (IOException e) {
+            System.err.println("Error running benchmark: " + e.getMessage());
+        }
+    }
+}
@@ -2,115 +2,452 @@ package org.example;
 
 import java.util.*;
 import java.io.*;
+import java.nio.file.*;
 
-import static org.example.Utils.getInputAndProcess;
+import static org.example.Utils.getMessagesAndProcess;
+import static org.example.Utils.getSegmentedInput;
 
 public class SubstitutionWithKeywordSolver {
 
-    private static final String NGRAM_FILES_DIR = "src/main/resources/";
-    private static final String[] NGRAM_FILES = {
-            "english_monograms.txt",
-            "english_bigrams.txt",
-            "english_trigrams.txt",
-            "english_quadgrams.txt",
-            "english_quintgrams.txt"
-    };
+    static final String NGRAM_FILES_DIR = "src/main/resources/";
+    private static final String WORD_FILE = "english_words.txt";
+
+    // Iterations per random chunk; each chunk draws its own generator from the seed,
+    // which makes the chunk index a complete cursor for checkpoints
+    private static final int CHUNK_SIZE = 100000;
 
     private final NGramScorer ngramScorer;
 
+    private long seed = System.nanoTime();
+    private SearchControl control = SearchControl.NONE;
+    private SearchMonitor monitor = SearchMonitor.NONE;
+    private Path checkpointPath;
+    private long checkpointIntervalMillis;
+
     public SubstitutionWithKeywordSolver(NGramScorer ngramScorer) {
         this.ngramScorer = ngramScorer;
     }
 
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Called after every chunk of the random search and every tempering round
+    public void setControl(SearchControl control) {
+        this.control = control;
+    }
+
+    // Told about every keyword tried and every new best result
+    public void setMonitor(SearchMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    // Periodically write the search state to the given file so it can be resumed
+    public void enableCheckpointing(Path checkpointPath, long checkpointIntervalMillis) {
+        this.checkpointPath = checkpointPath;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
     // Public method to execute the substitution solver logic
     public List<Result> solve(String ciphertext, int keywordLength, int numIterations, int topResultsLimit) {
-        ciphertext = preprocessText(ciphertext);
+        return solve(SegmentedText.of(ciphertext, ngramScorer.alphabet()), keywordLength, numIterations, topResultsLimit);
+    }
 
-        // Step 1: Generate random keywords and evaluate mappings
-        List<Result> topResults = new ArrayList<>();
-        for (int length = 1; length <= keywordLength; length++) {
-            System.out.println("Processing keywords of length: " + length);
-            List<Result> resultsForLength = randomKeywordSearch(ciphertext, length, numIterations, topResultsLimit);
-            topResults.addAll(resultsForLength);
+    // Solve several short messages encrypted under the same key with one joint search
+    public List<Result> solve(List<String> messages, int keywordLength, int numIterations, int topResultsLimit) {
+        return solve(SegmentedText.of(messages, ngramScorer.alphabet()), keywordLength, numIterations, topResultsLimit);
+    }
+
+    public List<Result> solve(SegmentedText ciphertext, int keywordLength, int numIterations, int topResultsLimit) {
+        SearchCheckpoint state = new SearchCheckpoint();
+        state.seed = seed;
+        state.maxKeywordLength = keywordLength;
+        state.numIterations = numIterations;
+        state.topResultsLimit = topResultsLimit;
+        state.ciphertextHash = ciphertext.hashCode();
+        state.keywordLength = 1;
+
+        return runSearch(ciphertext, state);
+    }
+
+    // Continue the search stored in the checkpoint file
+    public List<Result> resume(String ciphertext) throws IOException {
+        return resume(SegmentedText.of(ciphertext, ngramScorer.alphabet()));
+    }
+
+    public List<Result> resume(SegmentedText ciphertext) throws IOException {
+        if (checkpointPath == null) {
+            throw new IllegalStateException("Checkpointing is not enabled.");
+        }
+
+        SearchCheckpoint state = SearchCheckpoint.load(checkpointPath);
+        if (state.ciphertextHash != ciphertext.hashCode()) {
+            throw new IllegalArgumentException("Checkpoint " + checkpointPath + " was written for a different ciphertext.");
+        }
+        System.out.println("Resuming at keyword length " + state.keywordLength + ", chunk " + state.nextChunk);
+
+        return runSearch(ciphertext, state);
+    }
+
+    private List<Result> runSearch(SegmentedText ciphertext, SearchCheckpoint state) {
+        try (CheckpointWriter writer = checkpointPath == null ? null : new CheckpointWriter(checkpointPath)) {
+            // Step 1: Generate random keywords and evaluate mappings
+            while (state.keywordLength <= state.maxKeywordLength) {
+                System.out.println("Processing keywords of length: " + state.keywordLength);
+                randomKeywordSearch(ciphertext, state, writer);
+
+                state.completedResults.addAll(state.currentResults);
+                state.currentResults = new ArrayList<>();
+                state.visited = null;
+                state.nextChunk = 0;
+                state.keywordLength++;
+            }
+            if (writer != null) {
+                writer.submit(state.copy());
+            }
         }
 
         // Step 2: Evaluate permutations of top results and find the best ones
         System.out.println("Evaluating permutations of top results...");
 
-        return evaluatePermutations(topResults, ciphertext, topResultsLimit);
+        return evaluatePermutations(toResults(ciphertext, state.completedResults), ciphertext, state.topResultsLimit);
     }
 
-    // Preprocess the text by removing non-alphabetic characters and converting to uppercase
-    private String preprocessText(String text) {
-        return text.toUpperCase().replaceAll("[^A-Z]", "");
+    // Randomly generate keywords and evaluate mappings, continuing from the cursor in the state
+    private void randomKeywordSearch(SegmentedText ciphertext, SearchCheckpoint state, CheckpointWriter writer) {
+        int keywordLength = state.keywordLength;
+        int topResultsLimit = state.topResultsLimit;
+        List<Result> topResults = toResults(ciphertext, state.currentResults);
+        if (state.visited == null) {
+            state.visited = new SearchCheckpoint.KeywordSet(keywordLength, ciphertext.alphabet);
+        }
+
+        int iterations = state.numIterations / keywordLength;  // Adjust iterations per length
+        long chunks = chunkCount(keywordLength, state.numIterations);
+        byte[] plain = new byte[ciphertext.length()];
+        NGramHistogram histogram = ngramScorer.histogram(ciphertext);
+        NGramScorer.Cascade cascade = ngramScorer.cascade(topResultsLimit);
+        long lastCheckpoint = System.currentTimeMillis();
+
+        while (state.nextChunk < chunks) {
+            runChunk(ciphertext, histogram, plain, cascade, keywordLength, state.seed, state.nextChunk, iterations, state.visited,
+                    topResults, topResultsLimit);
+            state.nextChunk++;
+            control.iterationBoundary((keywordLength - 1 + (double) state.nextChunk / chunks) / state.maxKeywordLength);
+
+            // Snapshot on this thread, write on the checkpoint thread
+            if (writer != null && System.currentTimeMillis() - lastCheckpoint >= checkpointIntervalMillis) {
+                state.currentResults = toEntries(topResults);
+                writer.submit(state.copy());
+                lastCheckpoint = System.currentTimeMillis();
+            }
+        }
+
+        state.currentResults = toEntries(topResults);
+    }
+
+    /**
+     * Runs the given range of random chunks for one keyword length. Together with the seed the
+     * chunk range identifies a piece of work exactly, so it can be handed to another process.
+     *
+     * @return the top results of the range, highest score first
+     */
+    public List<Result> searchChunks(String ciphertext, int keywordLength, int numIterations, long seed,
+                                     long fromChunk, long toChunk, int topResultsLimit) {
+        SegmentedText text = SegmentedText.of(ciphertext, ngramScorer.alphabet());
+        byte[] plain = new byte[text.length()];
+        List<Result> topResults = new ArrayList<>();
+        NGramHistogram histogram = ngramScorer.histogram(text);
+        NGramScorer.Cascade cascade = ngramScorer.cascade(topResultsLimit);
+        SearchCheckpoint.KeywordSet visited = new SearchCheckpoint.KeywordSet(keywordLength, text.alphabet);
+        int iterations = numIterations / keywordLength;
+        for (long chunk = fromChunk; chunk < toChunk; chunk++) {
+            runChunk(text, histogram, plain, cascade, keywordLength, seed, chunk, iterations, visited, topResults, topResultsLimit);
+        }
+        return topResults;
     }
 
-    // Randomly generate keywords and evaluate mappings
-    private List<Result> randomKeywordSearch(String ciphertext, int keywordLength, int numIterations, int topResultsLimit) {
+    /**
+     * Exhaustively tries every keyword of the given length whose rank, its base-radix value
+     * in the scorer's alphabet, lies in [fromRank, toRank). Ranks of keywords with repeated
+     * letters are skipped.
+     *
+     * @return the top results of the range, highest score first
+     */
+    public List<Result> searchKeywordRange(String ciphertext, int keywordLength, long fromRank, long toRank,
+                                           int topResultsLimit) {
+        SegmentedText text = SegmentedText.of(ciphertext, ngramScorer.alphabet());
+        byte[] plain = new byte[text.length()];
+        NGramHistogram histogram = ngramScorer.histogram(text);
+        NGramScorer.Cascade cascade = ngramScorer.cascade(topResultsLimit);
         List<Result> topResults = new ArrayList<>();
-        Random random = new Random();
-        Set<String> triedKeywords = new HashSet<>();
+        Alphabet alphabet = text.alphabet;
+        int radix = alphabet.size();
+        char[] letters = new char[keywordLength];
+        for (long rank = fromRank; rank < toRank; rank++) {
+            long used = 0;
+            boolean repeated = false;
+            long rest = rank;
+            for (int i = keywordLength - 1; i >= 0; i--) {
+                int letter = (int) (rest % radix);
+                rest /= radix;
+                if ((used & (1L << letter)) != 0) {
+                    repeated = true;
+                    break;
+                }
+                used |= 1L << letter;
+                letters[i] = alphabet.symbol(letter);
+            }
+            if (!repeated) {
+                evaluateKeyword(text, histogram, plain, cascade, new String(letters), topResults, topResultsLimit);
+            }
+        }
+        return topResults;
+    }
+
+    /**
+     * Searches keywords of up to maxKeywordLength distinct letters with parallel tempering
+     * instead of random sampling, so all cores work on the one ciphertext. Suited to keywords
+     * too long for the random search to cover.
+     *
+     * @return the best keyword found, followed by the best permutations of it
+     */
+    public List<Result> solveWithTempering(SegmentedText ciphertext, int maxKeywordLength, int replicas, int rounds,
+                                           int stepsPerRound, int topResultsLimit) {
+        double maxTemperature = ParallelTempering.defaultMaxTemperature(ciphertext.length());
+        KeywordProblem problem = new KeywordProblem(ciphertext, ngramScorer, maxKeywordLength);
+        ParallelTempering<String> tempering = new ParallelTempering<>(problem, replicas, maxTemperature / 40.0,
+                maxTemperature, stepsPerRound, rounds, ParallelTempering.defaultThreads(replicas), seed);
+        tempering.setControl(control);
+        tempering.setMonitor(monitor);
+        ParallelTempering.Result<String> best = tempering.run();
+
+        List<Result> results = toResults(ciphertext, List.of(new SearchCheckpoint.Entry(best.key, best.fitness)));
+        if (best.key.length() > 8) {
+            return results; // too many permutations to try them all
+        }
+        System.out.println("Evaluating permutations of the best keyword...");
+        return evaluatePermutations(results, ciphertext, topResultsLimit);
+    }
 
-        int iterations = numIterations / keywordLength;  // Adjust iterations per length
+    /**
+     * Keywords of distinct letters for {@link ParallelTempering}.
+     */
+    static class KeywordProblem implements SearchProblem<String> {
+        private final SegmentedText ciphertext;
+        private final NGramScorer ngramScorer;
+        private final Alphabet alphabet;
+        private final int maxKeywordLength;
+        private final NGramHistogram histogram;
+
+        KeywordProblem(SegmentedText ciphertext, NGramScorer ngramScorer, int maxKeywordLength) {
+            this.ciphertext = ciphertext;
+            this.ngramScorer = ngramScorer;
+            this.alphabet = ciphertext.alphabet;
+            this.maxKeywordLength = Math.min(maxKeywordLength, alphabet.size());
+            this.histogram = ngramScorer.histogram(ciphertext);
+        }
+
+        @Override
+        public String randomKey(Random random) {
+            StringBuilder keyword = new StringBuilder();
+            int length = 1 + random.nextInt(maxKeywordLength);
+            while (keyword.length() < length) {
+                keyword.append(unusedLetter(keyword, random));
+            }
+            return keyword.toString();
+        }
 
-        for (int i = 0; i < iterations; i++) {
-            String keyword = generateRandomKeyword(random, keywordLength);
-            if (triedKeywords.contains(keyword)) {
-                continue;
+        // Replace a letter, swap two letters, or grow or shrink the keyword by one letter
+        @Override
+        public String mutate(String key, Random random) {
+            StringBuilder keyword = new StringBuilder(key);
+            int operation = random.nextInt(10);
+            if (operation == 0 && keyword.length() < maxKeywordLength) {
+                keyword.insert(random.nextInt(keyword.length() + 1), unusedLetter(keyword, random));
+            } else if (operation == 1 && keyword.length() > 1) {
+                keyword.deleteCharAt(random.nextInt(keyword.length()));
+            } else if (operation <= 3 && keyword.length() > 1) {
+                int i = random.nextInt(keyword.length());
+                int j = random.nextInt(keyword.length());
+                char temp = keyword.charAt(i);
+                keyword.setCharAt(i, keyword.charAt(j));
+                keyword.setCharAt(j, temp);
+            } else if (keyword.length() < alphabet.size()) {
+                keyword.setCharAt(random.nextInt(keyword.length()), unusedLetter(keyword, random));
             }
-            triedKeywords.add(keyword);
+            return keyword.toString();
+        }
 
-            List<Character> cipherAlphabet = buildCipherAlphabet(keyword);
-            Map<Character, Character> mapping = buildMappingFromCipherAlphabet(cipherAlphabet);
-            String decryption = applyMapping(ciphertext, mapping);
+        @Override
+        public double fitness(String keyword) {
+            return ngramScorer.score(histogram, buildMapping(keyword, alphabet));
+        }
 
-            double score = ngramScorer.score(decryption);
+        @Override
+        public String describe(String keyword) {
+            return keyword;
+        }
 
-            Result result = new Result(score, keyword, cipherAlphabet, decryption);
+        @Override
+        public String decrypt(String keyword) {
+            byte[] plain = new byte[ciphertext.length()];
+            applyMapping(ciphertext.codes, buildMapping(keyword, alphabet), plain);
+            return ciphertext.decode(plain);
+        }
 
-            // Keep the top results
-            if (topResults.size() < topResultsLimit) {
-                topResults.add(result);
-                topResults.sort(Comparator.comparingDouble(r -> -r.score));
-            } else if (score > topResults.get(topResults.size() - 1).score) {
-                topResults.set(topResults.size() - 1, result);
-                topResults.sort(Comparator.comparingDouble(r -> -r.score));
+        private char unusedLetter(CharSequence keyword, Random random) {
+            while (true) {
+                char c = alphabet.symbol(random.nextInt(alphabet.size()));
+                if (keyword.toString().indexOf(c) < 0) {
+                    return c;
+                }
+            }
+        }
+    }
+
+    // Number of ranks for keywords of the given length in the letters A-Z
+    public static long keywordRankCount(int keywordLength) {
+        return keywordRankCount(keywordLength, Alphabet.LATIN_26);
+    }
+
+    public static long keywordRankCount(int keywordLength, Alphabet alphabet) {
+        long count = 1;
+        for (int i = 0; i < keywordLength; i++) {
+            count *= alphabet.size();
+        }
+        return count;
+    }
+
+    // Number of random chunks searched for one keyword length
+    public static long chunkCount(int keywordLength, int numIterations) {
+        int iterations = numIterations / keywordLength;
+        return (iterations + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    // Run one chunk of the random search, skipping keywords already in the visited set
+    private void runChunk(SegmentedText ciphertext, NGramHistogram histogram, byte[] plain, NGramScorer.Cascade cascade,
+                          int keywordLength, long seed, long chunk, int iterations, SearchCheckpoint.KeywordSet visited, List<Result> topResults,
+                          int topResultsLimit) {
+        Random random = new Random(chunkSeed(seed, keywordLength, chunk));
+        int start = (int) (chunk * CHUNK_SIZE);
+        int end = Math.min(iterations, start + CHUNK_SIZE);
+        long evaluated = 0;
+
+        for (int i = start; i < end; i++) {
+            String keyword = generateRandomKeyword(random, keywordLength, ciphertext.alphabet);
+            if (visited.add(SearchCheckpoint.KeywordSet.rank(keyword, ciphertext.alphabet))) {
+                evaluateKeyword(ciphertext, histogram, plain, cascade, keyword, topResults, topResultsLimit);
+                evaluated++;
             }
 
             // Print progress every 1000 iterations
-            if ((i + 1) % 1000 == 0) {
+            if ((i + 1) % 1000 == 0 && !topResults.isEmpty()) {
                 System.out.println("Iteration " + (i + 1) + " / " + iterations + " for keyword length " + keywordLength);
                 System.out.println("Top result so far: " + topResults.get(0).keyword + " | Score: " + topResults.get(0).score);
             }
         }
+        monitor.candidates(evaluated);
+    }
 
-        return topResults;
+    // Score one keyword and keep it if it belongs in the top results
+    // The key is scored on the ciphertext histogram; the plain buffer, scratch space of the
+    // ciphertext's length, is only filled for keys that make the top results
+    private void evaluateKeyword(SegmentedText ciphertext, NGramHistogram histogram, byte[] plain,
+                                 NGramScorer.Cascade cascade, String keyword, List<Result> topResults,
+                                 int topResultsLimit) {
+        byte[] mapping = buildMapping(keyword, ciphertext.alphabet);
+
+        double score = cascade.score(histogram, mapping);
+        if (score == Double.NEGATIVE_INFINITY) {
+            return; // dropped by the cheap stage of the cascade
+        }
+
+        // Keep the top results; the cipher alphabet and decryption string are only built for those
+        Result kept;
+        if (topResults.size() < topResultsLimit) {
+            applyMapping(ciphertext.codes, mapping, plain);
+            kept = new Result(score, keyword, buildCipherAlphabet(mapping, ciphertext.alphabet), ciphertext.decode(plain));
+            topResults.add(kept);
+        } else if (score > topResults.get(topResults.size() - 1).score) {
+            applyMapping(ciphertext.codes, mapping, plain);
+            kept = new Result(score, keyword, buildCipherAlphabet(mapping, ciphertext.alphabet), ciphertext.decode(plain));
+            topResults.set(topResults.size() - 1, kept);
+        } else {
+            return;
+        }
+        topResults.sort(Comparator.comparingDouble(r -> -r.score));
+        if (topResults.get(0) == kept) {
+            monitor.improved(score, () -> kept.decryption);
+        }
+    }
+
+    // Seed of the random generator for one chunk of one keyword length
+    private static long chunkSeed(long seed, int keywordLength, long chunk) {
+        long z = seed + 0x9E3779B97F4A7C15L * (((long) keywordLength << 40) + chunk + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private List<SearchCheckpoint.Entry> toEntries(List<Result> results) {
+        List<SearchCheckpoint.Entry> entries = new ArrayList<>();
+        for (Result result : results) {
+            entries.add(new SearchCheckpoint.Entry(result.keyword, result.score));
+        }
+        return entries;
+    }
+
+    // Rebuild full results from checkpoint entries
+    List<Result> toResults(SegmentedText ciphertext, List<SearchCheckpoint.Entry> entries) {
+        List<Result> results = new ArrayList<>();
+        byte[] plain = new byte[ciphertext.length()];
+        for (SearchCheckpoint.Entry entry : entries) {
+            byte[] mapping = buildMapping(entry.keyword, ciphertext.alphabet);
+            applyMapping(ciphertext.codes, mapping, plain);
+            results.add(new Result(entry.score, entry.keyword, buildCipherAlphabet(mapping, ciphertext.alphabet),
+                    ciphertext.decode(plain)));
+        }
+        return results;
     }
 
     // Evaluate permutations of keywords and select the best results
-    private List<Result> evaluatePermutations(List<Result> topResults, String ciphertext, int topResultsLimit) {
+    public List<Result> evaluatePermutations(List<Result> topResults, SegmentedText ciphertext, int topResultsLimit) {
+        byte[] plain = new byte[ciphertext.length()];
+        NGramHistogram histogram = ngramScorer.histogram(ciphertext);
+        NGramScorer.Cascade cascade = ngramScorer.cascade(topResultsLimit);
         PriorityQueue<Result> permutationResults = new PriorityQueue<>(topResultsLimit, Comparator.comparingDouble(r -> r.score));
+        double bestScore = Double.NEGATIVE_INFINITY;
 
         for (Result result : topResults) {
             List<String> permutations = generatePermutations(result.keyword);
+            monitor.candidates(permutations.size());
             for (String permutedKeyword : permutations) {
-                List<Character> cipherAlphabet = buildCipherAlphabet(permutedKeyword);
-                Map<Character, Character> mapping = buildMappingFromCipherAlphabet(cipherAlphabet);
-                String decryption = applyMapping(ciphertext, mapping);
-
-                double score = ngramScorer.score(decryption);
+                byte[] mapping = buildMapping(permutedKeyword, ciphertext.alphabet);
 
-                Result permutedResult = new Result(score, permutedKeyword, cipherAlphabet, decryption);
+                double score = cascade.score(histogram, mapping);
+                if (score == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
 
                 if (permutationResults.size() < topResultsLimit) {
-                    permutationResults.add(permutedResult);
+                    applyMapping(ciphertext.codes, mapping, plain);
+                    permutationResults.add(new Result(score, permutedKeyword, buildCipherAlphabet(mapping, ciphertext.alphabet),
+                            ciphertext.decode(plain)));
                 } else {
                     assert permutationResults.peek() != null;
                     if (score > permutationResults.peek().score) {
                         permutationResults.poll();
-                        permutationResults.add(permutedResult);
+                        applyMapping(ciphertext.codes, mapping, plain);
+                        permutationResults.add(new Result(score, permutedKeyword,
+                                buildCipherAlphabet(mapping, ciphertext.alphabet), ciphertext.decode(plain)));
                     }
                 }
+                if (score > bestScore) {
+                    bestScore = score;
+                    String decryption = ciphertext.decode(plain);
+                    monitor.improved(score, () -> decryption);
+                }
             }
 
             // Print progress after evaluating permutations for each keyword
@@ -125,50 +462,74 @@ public class SubstitutionWithKeywordSolver {
         return sortedResults;
     }
 
-    // Generate random keyword of a specified length
-    private String generateRandomKeyword(Random random, int length) {
-        List<Character> letters = new ArrayList<>();
-        for (char ch = 'A'; ch <= 'Z'; ch++) {
-            letters.add(ch);
+    // Generate random keyword of a specified length; the same shuffle as Collections.shuffle, so seeds keep their keywords
+    private String generateRandomKeyword(Random random, int length, Alphabet alphabet) {
+        char[] letters = alphabet.symbols();
+        for (int i = letters.length; i > 1; i--) {
+            int j = random.nextInt(i);
+            char temp = letters[i - 1];
+            letters[i - 1] = letters[j];
+            letters[j] = temp;
         }
-        Collections.shuffle(letters, random);
-        StringBuilder keyword = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            keyword.append(letters.get(i));
+        return new String(letters, 0, length);
+    }
+
+    // Encrypt the plaintext with the cipher alphabet of the keyword (plain A -> first cipher letter, ...)
+    public static String encrypt(String plaintext, String keyword) {
+        return encrypt(plaintext, keyword, Alphabet.LATIN_26);
+    }
+
+    public static String encrypt(String plaintext, String keyword, Alphabet alphabet) {
+        List<Character> cipherAlphabet = buildCipherAlphabet(buildMapping(keyword, alphabet), alphabet);
+        StringBuilder ciphertext = new StringBuilder();
+        for (byte code : alphabet.encode(plaintext)) {
+            ciphertext.append(cipherAlphabet.get(code));
         }
-        return keyword.toString();
+        return ciphertext.toString();
     }
 
-    // Build cipher alphabet from keyword
-    private List<Character> buildCipherAlphabet(String keyword) {
-        Set<Character> seen = new LinkedHashSet<>();
-        for (char ch : keyword.toCharArray()) {
-            seen.add(ch);
+    // Cipher alphabet (the cipher symbol of plain A, B, ...) of a mapping built by buildMapping
+    private static List<Character> buildCipherAlphabet(byte[] mapping, Alphabet alphabet) {
+        char[] cipherAlphabet = new char[mapping.length];
+        for (int c = 0; c < mapping.length; c++) {
+            cipherAlphabet[mapping[c]] = alphabet.symbol(c);
         }
-        for (char ch = 'A'; ch <= 'Z'; ch++) {
-            seen.add(ch);
+        List<Character> list = new ArrayList<>(cipherAlphabet.length);
+        for (char ch : cipherAlphabet) {
+            list.add(ch);
         }
-        return new ArrayList<>(seen);
+        return list;
     }
 
-    // Build character mapping from cipher alphabet
-    private Map<Character, Character> buildMappingFromCipherAlphabet(List<Character> cipherAlphabet) {
-        Map<Character, Character> mapping = new HashMap<>();
-        char plainChar = 'A';
-        for (char cipherChar : cipherAlphabet) {
-            mapping.put(cipherChar, plainChar);
-            plainChar++;
+    /**
+     * Letter-code mapping (cipher code -> plain code) of a keyword: its distinct symbols
+     * followed by the rest of the alphabet in order form the cipher alphabet. Symbols the
+     * alphabet does not read are ignored.
+     */
+    private static byte[] buildMapping(String keyword, Alphabet alphabet) {
+        byte[] mapping = new byte[alphabet.size()];
+        long used = 0;
+        int plainCode = 0;
+        for (int i = 0; i < keyword.length(); i++) {
+            int c = alphabet.code(keyword.charAt(i));
+            if (c >= 0 && (used & (1L << c)) == 0) {
+                used |= 1L << c;
+                mapping[c] = (byte) plainCode++;
+            }
+        }
+        for (int c = 0; c < mapping.length; c++) {
+            if ((used & (1L << c)) == 0) {
+                mapping[c] = (byte) plainCode++;
+            }
         }
         return mapping;
     }
 
-    // Apply character mapping to a text
-    private String applyMapping(String text, Map<Character, Character> mapping) {
-        StringBuilder result = new StringBuilder();
-        for (char ch : text.toCharArray()) {
-            result.append(mapping.getOrDefault(ch, ch));
+    // Apply letter-code mapping to a text
+    private static void applyMapping(byte[] text, byte[] mapping, byte[] result) {
+        for (int i = 0; i < text.length; i++) {
+            result[i] = mapping[text[i]];
         }
-        return result.toString();
     }
 
     // Generate all permutations of a keyword
@@ -199,11 +560,14 @@ public class SubstitutionWithKeywordSolver {
     }
 
     // Helper class to store results
-    public static class Result {
+    public static class Result implements WordSegmenter.Candidate {
         double score;
         String keyword;
         List<Character> cipherAlphabet;
         String decryption;
+        // Only set when the results have been rescored
+        WordSegmenter.Segmentation segmentation;
+        double combinedScore = Double.NaN;
 
         Result(double score, String keyword, List<Character> cipherAlphabet, String decryption) {
             this.score = score;
@@ -211,30 +575,151 @@ public class SubstitutionWithKeywordSolver {
             this.cipherAlphabet = new ArrayList<>(cipherAlphabet);
             this.decryption = decryption;
         }
+
+        @Override
+        public String text() {
+            return decryption;
+        }
+
+        @Override
+        public double ngramScore() {
+            return score;
+        }
+
+        @Override
+        public void setRescore(WordSegmenter.Segmentation segmentation, double combinedScore) {
+            this.segmentation = segmentation;
+            this.combinedScore = combinedScore;
+        }
+
+        @Override
+        public double combinedScore() {
+            return combinedScore;
+        }
     }
 
-    // Static method to initialize the n-gram scorer
+    // Static method to initialize the n-gram scorer, through the model cache and warmed up
+    // The English model for A-Z; for another selected alphabet its own pack, see modelFiles
     public static NGramScorer loadNGramScorer() throws IOException {
-        return new NGramScorer(NGRAM_FILES_DIR, NGRAM_FILES);
+        Alphabet alphabet = Alphabet.selected();
+        String[] files = modelFiles(NGRAM_FILES_DIR, alphabet);
+        NGramScorer ngramScorer = ModelCache.defaultCache().load(NGRAM_FILES_DIR, files, alphabet);
+        ngramScorer.warmUp();
+        return ngramScorer;
+    }
+
+    // The orders present in the directory, binary preferred: english_monograms ... for A-Z (the
+    // quintgrams are not shipped), otherwise the <alphabet>_monograms ... files trained with
+    // "ksb train --alphabet <alphabet> --prefix <alphabet>"
+    static String[] modelFiles(String dir, Alphabet alphabet) throws IOException {
+        String prefix = alphabet == Alphabet.LATIN_26 ? "english" : alphabet.name();
+        List<String> files = new ArrayList<>();
+        for (int order = 1; order < NGramCounts.ORDER_NAMES.length; order++) {
+            for (String extension : new String[]{".bin", ".txt"}) {
+                String file = NGramCounts.fileName(prefix, order, extension);
+                if (Files.exists(Paths.get(dir + file))) {
+                    files.add(file);
+                    break;
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            throw new FileNotFoundException("No " + alphabet + " n-gram files in " + dir);
+        }
+        return files.toArray(new String[0]);
+    }
+
+    // Static method to load the word list used for rescoring
+    public static WordSegmenter loadWordSegmenter() throws IOException {
+        return new WordSegmenter(NGRAM_FILES_DIR + WORD_FILE);
     }
 
     public static void main(String[] args) {
+        Path checkpointPath = null;
+        long checkpointIntervalSeconds = 60;
+        boolean resume = false;
+        boolean multipleMessages = false;
+        boolean rescore = false;
+        boolean tempering = false;
+        int maxKeywordLength = 4;
+        int replicas = 8;
+        int rounds = 200;
+        int stepsPerRound = 1000;
+        int numIterations = 100000000;
+        int topResultsLimit = 10;
+        int cascadeOrder = 3;
+        Double cascadeMargin = null;
+        Long seed = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--checkpoint" -> checkpointPath = Paths.get(args[++i]);
+                case "--checkpoint-interval" -> checkpointIntervalSeconds = Long.parseLong(args[++i]);
+                case "--resume" -> resume = true;
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--messages" -> multipleMessages = true;
+                case "--rescore" -> rescore = true;
+                case "--tempering" -> tempering = true;
+                case "--max-keyword-length" -> maxKeywordLength = Integer.parseInt(args[++i]);
+                case "--iterations" -> numIterations = Integer.parseInt(args[++i]);
+                case "--top" -> topResultsLimit = Integer.parseInt(args[++i]);
+                case "--replicas" -> replicas = Integer.parseInt(args[++i]);
+                case "--rounds" -> rounds = Integer.parseInt(args[++i]);
+                case "--steps" -> stepsPerRound = Integer.parseInt(args[++i]);
+                case "--cascade-order" -> cascadeOrder = Integer.parseInt(args[++i]);
+                case "--cascade-margin" -> cascadeMargin = Double.parseDouble(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+        if (resume && checkpointPath == null) {
+            System.err.println("--resume requires --checkpoint <file>");
+            return;
+        }
+        if (tempering && checkpointPath != null) {
+            System.err.println("--checkpoint and --resume only apply to the random keyword search, not --tempering");
+            return;
+        }
+
         try {
             // Load the N-gram scorer
             NGramScorer ngramScorer = SubstitutionWithKeywordSolver.loadNGramScorer();
+            if (cascadeMargin != null) {
+                ngramScorer.setCascade(cascadeOrder, cascadeMargin);
+            }
 
             // Create the substitution solver with the loaded N-gram scorer
             SubstitutionWithKeywordSolver solver = new SubstitutionWithKeywordSolver(ngramScorer);
+            if (seed != null) {
+                solver.setSeed(seed);
+            }
+            if (checkpointPath != null) {
+                solver.enableCheckpointing(checkpointPath, checkpointIntervalSeconds * 1000);
+            }
 
-            // Get the ciphertext from the user
-            String ciphertext = getInputAndProcess();
-
-            int maxKeywordLength = 4;
-            int numIterations = 100000000;
-            int topResultsLimit = 10;
+            // Get the ciphertext from the user; several messages under one key are solved jointly
+            SegmentedText ciphertext = multipleMessages
+                    ? SegmentedText.of(getMessagesAndProcess(), ngramScorer.alphabet())
+                    : getSegmentedInput();
+
+            // Solve for the keyword using the provided inputs, or continue from the checkpoint
+            List<SubstitutionWithKeywordSolver.Result> results;
+            if (resume) {
+                results = solver.resume(ciphertext);
+            } else if (tempering) {
+                results = solver.solveWithTempering(ciphertext, maxKeywordLength, replicas, rounds, stepsPerRound, topResultsLimit);
+            } else {
+                results = solver.solve(ciphertext, maxKeywordLength, numIterations, topResultsLimit);
+            }
+            if (ngramScorer.isCascadeEnabled()) {
+                System.out.println(ngramScorer.getCascadeStats());
+            }
 
-            // Solve for the keyword using the provided inputs
-            List<SubstitutionWithKeywordSolver.Result> results = solver.solve(ciphertext, maxKeywordLength, numIterations, topResultsLimit);
+            // Optional second stage on the final top results only
+            if (rescore) {
+                results = loadWordSegmenter().rescore(results);
+            }
 
             // Output the top results
             System.out.println("\nTop results:");
@@ -243,11 +728,15 @@ public class SubstitutionWithKeywordSolver {
                 System.out.println("Result " + (i + 1) + ":");
                 System.out.println("Keyword: " + result.keyword);
                 System.out.println("Score: " + result.score);
+                if (result.segmentation != null) {
+                    System.out.println("Word score: " + result.segmentation.logProb + " | Combined score: " + result.combinedScore);
+                    System.out.println("Words: " + result.segmentation);
+                }
                 System.out.println("Decrypted text: " + result.decryption);
                 System.out.println("--------------------------------");
             }
         } catch (IOException e) {
-            System.err.println("Error loading N-gram scorer: " + e.getMessage());
+            System.err.println("Error loading N-gram scorer or checkpoint: " + e.getMessage());
         }
     }
 }
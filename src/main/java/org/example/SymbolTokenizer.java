@@ -0,0 +1,104 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Splits a ciphertext over an arbitrary symbol alphabet into symbol ids, for ciphers with
+ * more than 26 symbols (homophonic substitution). Symbols are numbered in order of first
+ * appearance.
+ */
+public class SymbolTokenizer {
+
+    public enum Mode {
+        // Symbols separated by whitespace, e.g. "12 05 33 05"
+        WHITESPACE,
+        // Symbols of a fixed number of characters, whitespace ignored, e.g. "12053305"
+        FIXED_WIDTH,
+        // Every non-whitespace character is a symbol
+        CHARACTER
+    }
+
+    /**
+     * A tokenised ciphertext.
+     */
+    public static class Tokens {
+        // Symbol id at every position
+        public final int[] ids;
+        // Text of every symbol id
+        public final List<String> symbols;
+
+        Tokens(int[] ids, List<String> symbols) {
+            this.ids = ids;
+            this.symbols = symbols;
+        }
+
+        public int symbolCount() {
+            return symbols.size();
+        }
+    }
+
+    private final Mode mode;
+    private final int width;
+
+    /**
+     * @param mode  how symbols are delimited
+     * @param width symbol length in characters for {@link Mode#FIXED_WIDTH}, ignored otherwise
+     */
+    public SymbolTokenizer(Mode mode, int width) {
+        if (mode == Mode.FIXED_WIDTH && width < 1) {
+            throw new IllegalArgumentException("Symbol width must be at least 1.");
+        }
+        this.mode = mode;
+        this.width = width;
+    }
+
+    public Tokens tokenize(String text) {
+        List<String> parts = new ArrayList<>();
+        switch (mode) {
+            case WHITESPACE -> {
+                for (String part : text.trim().split("\\s+")) {
+                    if (!part.isEmpty()) {
+                        parts.add(part);
+                    }
+                }
+            }
+            case FIXED_WIDTH -> {
+                String compact = text.replaceAll("\\s+", "");
+                if (compact.length() % width != 0) {
+                    throw new IllegalArgumentException("Text length " + compact.length()
+                            + " is not a multiple of the symbol width " + width + ".");
+                }
+                for (int i = 0; i < compact.length(); i += width) {
+                    parts.add(compact.substring(i, i + width));
+                }
+            }
+            case CHARACTER -> text.codePoints()
+                    .filter(c -> !Character.isWhitespace(c))
+                    .forEach(c -> parts.add(new String(Character.toChars(c))));
+        }
+
+        Map<String, Integer> idOf = new HashMap<>();
+        List<String> symbols = new ArrayList<>();
+        int[] ids = new int[parts.size()];
+        for (int i = 0; i < parts.size(); i++) {
+            Integer id = idOf.get(parts.get(i));
+            if (id == null) {
+                id = symbols.size();
+                idOf.put(parts.get(i), id);
+                symbols.add(parts.get(i));
+            }
+            ids[i] = id;
+        }
+        return new Tokens(ids, symbols);
+    }
+
+    // Parse a mode name as given on the command line: whitespace, fixed or char
+    static Mode parseMode(String name) {
+        return switch (name) {
+            case "whitespace" -> Mode.WHITESPACE;
+            case "fixed" -> Mode.FIXED_WIDTH;
+            case "char" -> Mode.CHARACTER;
+            default -> throw new IllegalArgumentException("Unknown symbol mode: " + name);
+        };
+    }
+}
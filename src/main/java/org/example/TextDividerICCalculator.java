@@ -7,8 +7,17 @@ import static org.example.Utils.getInputAndProcess;
 public class TextDividerICCalculator {
 
     public static void main(String[] args) {
-        String ciphertext = getInputAndProcess();
         int keywordLength = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--keyword-length" -> keywordLength = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+        String ciphertext = getInputAndProcess();
 
         // Step 3: Divide the text into multiple strings based on keyword length
         List<String> dividedStrings = divideTextByKeywordLength(ciphertext, keywordLength);
@@ -53,17 +62,20 @@ public class TextDividerICCalculator {
             return 0.0; // Avoid division by zero
         }
 
-        Map<Character, Integer> frequencyMap = new HashMap<>();
-
-        // Calculate frequency of each character
-        for (char ch : text.toCharArray()) {
-            frequencyMap.put(ch, frequencyMap.getOrDefault(ch, 0) + 1);
+        // Calculate frequency of each symbol of the alphabet
+        Alphabet alphabet = Alphabet.selected();
+        int[] frequencies = new int[alphabet.size()];
+        for (int i = 0; i < n; i++) {
+            int code = alphabet.code(text.charAt(i));
+            if (code >= 0) {
+                frequencies[code]++;
+            }
         }
 
         // Calculate the IC using the formula IC = (Σ f_i * (f_i - 1)) / (n * (n - 1))
         double icSum = 0.0;
-        for (int frequency : frequencyMap.values()) {
-            icSum += frequency * (frequency - 1);
+        for (int frequency : frequencies) {
+            icSum += (double) frequency * (frequency - 1);
         }
 
         return icSum / (n * (n - 1));
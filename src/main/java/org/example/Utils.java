@@ -1,10 +1,25 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 public class Utils {
+    // System property naming a ciphertext file to read instead of stdin, set by the launcher's --input
+    static final String INPUT_PROPERTY = "ksb.input";
+    // Longest ciphertext echoed back in full
+    private static final int ECHO_LIMIT = 200;
+
     public static String getInputAndProcess() {
-        Scanner scanner = new Scanner(System.in);
+        if (System.getProperty(INPUT_PROPERTY) != null) {
+            return ingestInputFile().letters();
+        }
+        Scanner scanner = new Scanner(System.in, StandardCharsets.UTF_8);
         StringBuilder input = new StringBuilder();
         String line;
 
@@ -17,8 +32,97 @@ public class Utils {
             }
             input.append(line).append(" ");  // Append line to input with a space between lines
         }
-        String ciphertext = input.toString().toUpperCase().replaceAll("[^A-Z]", "");
-        System.out.println("Processed Ciphertext: " + ciphertext);
+        String ciphertext = Alphabet.selected().normalise(input);
+        System.out.println("Processed Ciphertext: " + preview(ciphertext));
         return ciphertext;
     }
+
+    // The ciphertext as symbol codes; an input file goes straight to codes without a string copy
+    public static SegmentedText getSegmentedInput() {
+        if (System.getProperty(INPUT_PROPERTY) != null) {
+            return ingestInputFile().toSegmentedText();
+        }
+        return SegmentedText.of(getInputAndProcess(), Alphabet.selected());
+    }
+
+    // Alphabets beyond ASCII are read as UTF-8 text, the byte-level reader only knows single-byte symbols
+    private static IngestedText ingestInputFile() {
+        String path = System.getProperty(INPUT_PROPERTY);
+        Alphabet alphabet = Alphabet.selected();
+        try {
+            IngestedText text = alphabet.isAscii()
+                    ? IngestedText.map(Paths.get(path), alphabet, false, Runtime.getRuntime().availableProcessors())
+                    : IngestedText.of(Files.readString(Paths.get(path), StandardCharsets.UTF_8), alphabet);
+            System.out.println("Read " + text.length() + " letters from " + path);
+            return text;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Long ciphertexts are shortened to their start and length
+    private static String preview(String ciphertext) {
+        if (ciphertext.length() <= ECHO_LIMIT) {
+            return ciphertext;
+        }
+        return ciphertext.substring(0, ECHO_LIMIT) + "... (" + ciphertext.length() + " letters)";
+    }
+
+    // Read the ciphertext as typed, for homophonic symbols that no alphabet covers; lines are joined with spaces
+    public static String getRawInput() {
+        if (System.getProperty(INPUT_PROPERTY) != null) {
+            return String.join(" ", readInputLines()).trim();
+        }
+        Scanner scanner = new Scanner(System.in, StandardCharsets.UTF_8);
+        StringBuilder input = new StringBuilder();
+        String line;
+
+        System.out.println("Enter the ciphertext:");
+        while (scanner.hasNextLine() && !(line = scanner.nextLine()).isEmpty()) {
+            input.append(line).append(" ");
+        }
+        return input.toString().trim();
+    }
+
+    // Read several messages, one per line, until an empty line is entered; from an input file every non-empty line is a message
+    public static List<String> getMessagesAndProcess() {
+        List<String> messages = new ArrayList<>();
+        if (System.getProperty(INPUT_PROPERTY) != null) {
+            for (String line : readInputLines()) {
+                String message = Alphabet.selected().normalise(line);
+                if (!message.isEmpty()) {
+                    messages.add(message);
+                }
+            }
+            System.out.println("Processed " + messages.size() + " messages");
+            return messages;
+        }
+        Scanner scanner = new Scanner(System.in, StandardCharsets.UTF_8);
+        String line;
+
+        System.out.println("Enter the ciphertexts, one message per line:");
+        while (true) {
+            line = scanner.nextLine();
+            if (line.isEmpty()) {  // Stop when an empty line is entered
+                break;
+            }
+            String message = Alphabet.selected().normalise(line);
+            if (!message.isEmpty()) {
+                messages.add(message);
+            }
+        }
+        System.out.println("Processed " + messages.size() + " messages");
+        return messages;
+    }
+
+    private static List<String> readInputLines() {
+        String path = System.getProperty(INPUT_PROPERTY);
+        try {
+            List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+            System.out.println("Read " + lines.size() + " lines from " + path);
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading " + path + ": " + e.getMessage(), e);
+        }
+    }
 }
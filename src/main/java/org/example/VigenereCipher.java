@@ -0,0 +1,37 @@
+package org.example;
+
+public class VigenereCipher {
+
+    // Encrypt the plaintext by shifting each letter by the corresponding key letter
+    public static String encrypt(String plaintext, String key) {
+        return encrypt(plaintext, key, Alphabet.LATIN_26);
+    }
+
+    public static String encrypt(String plaintext, String key, Alphabet alphabet) {
+        return shift(plaintext, key, 1, alphabet);
+    }
+
+    // Decrypt the ciphertext by shifting each letter back by the corresponding key letter
+    public static String decrypt(String ciphertext, String key) {
+        return decrypt(ciphertext, key, Alphabet.LATIN_26);
+    }
+
+    public static String decrypt(String ciphertext, String key, Alphabet alphabet) {
+        return shift(ciphertext, key, -1, alphabet);
+    }
+
+    // Shifts are symbol codes, taken modulo the alphabet size
+    private static String shift(String text, String key, int direction, Alphabet alphabet) {
+        byte[] codes = alphabet.encode(text);
+        byte[] shifts = alphabet.encode(key);
+        if (shifts.length == 0) {
+            throw new IllegalArgumentException("Key must contain at least one letter.");
+        }
+
+        int m = alphabet.size();
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = (byte) ((codes[i] + direction * shifts[i % shifts.length] + m) % m);
+        }
+        return alphabet.decode(codes, 0, codes.length);
+    }
+}
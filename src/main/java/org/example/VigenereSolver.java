@@ -0,0 +1,199 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.example.Utils.getMessagesAndProcess;
+import static org.example.Utils.getSegmentedInput;
+
+/**
+ * Recovers a Vigenère key of known period with parallel tempering over the key letters.
+ * The period defaults to the one suggested by the periodic IC profile of the classifier.
+ */
+public class VigenereSolver {
+
+    /**
+     * Keys as one shift (0 to alphabet size - 1) per position of the period. The key restarts
+     * with every message.
+     */
+    static class KeyProblem implements SearchProblem<byte[]> {
+        private final SegmentedText ciphertext;
+        private final NGramScorer ngramScorer;
+        private final int period;
+        private final int radix;
+        private final ThreadLocal<byte[]> plainBuffer;
+
+        KeyProblem(SegmentedText ciphertext, NGramScorer ngramScorer, int period) {
+            this.ciphertext = ciphertext;
+            this.ngramScorer = ngramScorer;
+            this.period = period;
+            this.radix = ciphertext.alphabet.size();
+            this.plainBuffer = ThreadLocal.withInitial(() -> new byte[ciphertext.length()]);
+        }
+
+        @Override
+        public byte[] randomKey(Random random) {
+            byte[] key = new byte[period];
+            for (int i = 0; i < period; i++) {
+                key[i] = (byte) random.nextInt(radix);
+            }
+            return key;
+        }
+
+        // Change the shift of one position, or of two positions at once now and then
+        @Override
+        public byte[] mutate(byte[] key, Random random) {
+            byte[] mutated = key.clone();
+            int changes = random.nextInt(8) == 0 ? 2 : 1;
+            for (int i = 0; i < changes; i++) {
+                mutated[random.nextInt(period)] = (byte) random.nextInt(radix);
+            }
+            return mutated;
+        }
+
+        @Override
+        public double fitness(byte[] key) {
+            byte[] plain = plainBuffer.get();
+            VigenereSolver.decrypt(ciphertext, key, plain);
+            return ngramScorer.score(plain, ciphertext.offsets);
+        }
+
+        @Override
+        public String describe(byte[] key) {
+            return ciphertext.alphabet.decode(key, 0, key.length);
+        }
+
+        @Override
+        public String decrypt(byte[] key) {
+            byte[] plain = new byte[ciphertext.length()];
+            VigenereSolver.decrypt(ciphertext, key, plain);
+            return ciphertext.decode(plain);
+        }
+    }
+
+    /**
+     * Recovered key and the decryption it gives.
+     */
+    public static class Result {
+        public final String key;
+        public final double score;
+        public final String decryption;
+        public final long evaluations;
+
+        Result(String key, double score, String decryption, long evaluations) {
+            this.key = key;
+            this.score = score;
+            this.decryption = decryption;
+            this.evaluations = evaluations;
+        }
+    }
+
+    private final NGramScorer ngramScorer;
+    private int replicas = 8;
+    private int rounds = 50;
+    private int stepsPerRound = 500;
+    private long seed = System.nanoTime();
+    private SearchControl control = SearchControl.NONE;
+    private SearchMonitor monitor = SearchMonitor.NONE;
+
+    public VigenereSolver(NGramScorer ngramScorer) {
+        this.ngramScorer = ngramScorer;
+    }
+
+    public void setBudget(int replicas, int rounds, int stepsPerRound) {
+        this.replicas = replicas;
+        this.rounds = rounds;
+        this.stepsPerRound = stepsPerRound;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setControl(SearchControl control) {
+        this.control = control;
+    }
+
+    public void setMonitor(SearchMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    // Period suggested by the IC profile of the messages taken together
+    public static int estimatePeriod(SegmentedText ciphertext) {
+        return new CipherClassifier().extractFeatures(ciphertext).bestPeriod();
+    }
+
+    public Result solve(String ciphertext) {
+        SegmentedText text = SegmentedText.of(ciphertext, ngramScorer.alphabet());
+        return solve(text, estimatePeriod(text));
+    }
+
+    public Result solve(SegmentedText ciphertext, int period) {
+        ngramScorer.checkAlphabet(ciphertext);
+        double maxTemperature = ParallelTempering.defaultMaxTemperature(ciphertext.length());
+        KeyProblem problem = new KeyProblem(ciphertext, ngramScorer, period);
+        ParallelTempering<byte[]> tempering = new ParallelTempering<>(problem, replicas, maxTemperature / 40.0,
+                maxTemperature, stepsPerRound, rounds, ParallelTempering.defaultThreads(replicas), seed);
+        tempering.setControl(control);
+        tempering.setMonitor(monitor);
+        ParallelTempering.Result<byte[]> best = tempering.run();
+        return new Result(problem.describe(best.key), best.fitness, problem.decrypt(best.key), best.evaluations);
+    }
+
+    // Decrypt letter codes with the shifts of the key, restarting the key with every segment
+    static void decrypt(SegmentedText ciphertext, byte[] key, byte[] plain) {
+        int radix = ciphertext.alphabet.size();
+        for (int s = 0; s < ciphertext.segmentCount(); s++) {
+            int start = ciphertext.start(s);
+            int end = ciphertext.end(s);
+            int k = 0;
+            for (int i = start; i < end; i++) {
+                int c = ciphertext.codes[i] - key[k];
+                plain[i] = (byte) (c < 0 ? c + radix : c);
+                if (++k == key.length) {
+                    k = 0;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        boolean multipleMessages = false;
+        int period = 0;
+        VigenereSolver solver;
+        try {
+            solver = new VigenereSolver(SubstitutionWithKeywordSolver.loadNGramScorer());
+        } catch (IOException e) {
+            System.err.println("Error loading N-gram scorer: " + e.getMessage());
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--messages" -> multipleMessages = true;
+                case "--period" -> period = Integer.parseInt(args[++i]);
+                case "--replicas" -> solver.replicas = Integer.parseInt(args[++i]);
+                case "--rounds" -> solver.rounds = Integer.parseInt(args[++i]);
+                case "--steps" -> solver.stepsPerRound = Integer.parseInt(args[++i]);
+                case "--seed" -> solver.setSeed(Long.parseLong(args[++i]));
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        SegmentedText ciphertext = multipleMessages
+                ? SegmentedText.of(getMessagesAndProcess(), solver.ngramScorer.alphabet())
+                : getSegmentedInput();
+        if (period <= 0) {
+            period = estimatePeriod(ciphertext);
+            System.out.println("Estimated period: " + period);
+        }
+        Result result = solver.solve(ciphertext, period);
+
+        System.out.println("Key: " + result.key);
+        System.out.println("Score: " + result.score);
+        System.out.println("Keys evaluated: " + result.evaluations);
+        System.out.println("Decrypted Text: " + result.decryption);
+    }
+}
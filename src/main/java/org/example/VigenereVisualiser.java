@@ -3,7 +3,16 @@ package org.example;
 public class VigenereVisualiser {
 
     public static void main(String[] args) {
-        String key = "MOUSE"; // You can change this to any key you like
+        String key = "MOUSE";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--key" -> key = args[++i];
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
         visualizeVigenereDecoding(key);
     }
 
@@ -0,0 +1,237 @@
+package org.example;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Splits candidate plaintexts into words with a Viterbi-style dynamic program over a word
+ * list held in a trie. The word-level log probability is used to re-rank the final top
+ * results of a solver, where pure n-gram scores often cannot separate near-identical
+ * candidates. Segmenting is far too slow for the search loops, so it is only meant for
+ * the handful of results that are shown to the operator.
+ */
+public class WordSegmenter {
+
+    private static final int NO_CHILD = 0;
+    // An unknown letter costs about 10 (log10) with the bundled list, several times an n-gram
+    // letter; at full weight one unknown word can outweigh the whole n-gram score of a short text
+    static final double DEFAULT_WEIGHT = 0.25;
+
+    // Trie: node n has children children[n * 26 + letter], node 0 is the root
+    private int[] children;
+    private double[] wordLogProb; // NaN for nodes that do not end a word
+    private int nodeCount;
+    private int maxWordLength;
+
+    private final double unknownLetterLogProb;
+    private final double weight;
+
+    /**
+     * A solver result that can be re-ranked by {@link #rescore}.
+     */
+    public interface Candidate {
+        // The decryption to split into words
+        String text();
+
+        double ngramScore();
+
+        void setRescore(Segmentation segmentation, double combinedScore);
+
+        double combinedScore();
+    }
+
+    // Word list with the default weight
+    public WordSegmenter(String wordFile) throws IOException {
+        this(wordFile, DEFAULT_WEIGHT);
+    }
+
+    /**
+     * Loads a word list in the same "WORD count" format as the n-gram files. Lines starting
+     * with # are comments.
+     *
+     * @param wordFile path of the word list
+     * @param weight   weight of the word score relative to the n-gram score when combining them
+     */
+    public WordSegmenter(String wordFile, double weight) throws IOException {
+        this.weight = weight;
+        children = new int[1024 * 26];
+        wordLogProb = new double[1024];
+        Arrays.fill(wordLogProb, Double.NaN);
+        nodeCount = 1;
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        long total = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(wordFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length == 2) {
+                    long count = Long.parseLong(parts[1]);
+                    counts.merge(parts[0].toUpperCase(), count, Long::sum);
+                    total += count;
+                }
+            }
+        }
+        if (counts.isEmpty()) {
+            throw new IllegalArgumentException("Word file " + wordFile + " is empty.");
+        }
+
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            insert(entry.getKey(), Math.log10((double) entry.getValue() / total));
+        }
+        // A letter that is not part of any known word is priced like a rare one-letter word
+        // with an extra factor of ten per letter, so longer unknown runs get progressively worse
+        unknownLetterLogProb = Math.log10(10.0 / total) - 1.0;
+
+        System.out.println("Loaded " + counts.size() + " words from " + wordFile);
+    }
+
+    /**
+     * Result of segmenting a text into words.
+     */
+    public static class Segmentation {
+        public final List<String> words;
+        public final double logProb;
+
+        Segmentation(List<String> words, double logProb) {
+            this.words = words;
+            this.logProb = logProb;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", words);
+        }
+    }
+
+    private void insert(String word, double logProb) {
+        int node = 0;
+        for (int i = 0; i < word.length(); i++) {
+            int c = word.charAt(i) - 'A';
+            if (c < 0 || c >= 26) {
+                return; // Skip words with characters outside A-Z
+            }
+            int child = children[node * 26 + c];
+            if (child == NO_CHILD) {
+                child = newNode();
+                children[node * 26 + c] = child;
+            }
+            node = child;
+        }
+        // Keep the more probable entry if a word is listed twice
+        if (Double.isNaN(wordLogProb[node]) || logProb > wordLogProb[node]) {
+            wordLogProb[node] = logProb;
+        }
+        maxWordLength = Math.max(maxWordLength, word.length());
+    }
+
+    private int newNode() {
+        if (nodeCount == wordLogProb.length) {
+            children = Arrays.copyOf(children, children.length * 2);
+            int oldLength = wordLogProb.length;
+            wordLogProb = Arrays.copyOf(wordLogProb, oldLength * 2);
+            Arrays.fill(wordLogProb, oldLength, wordLogProb.length, Double.NaN);
+        }
+        return nodeCount++;
+    }
+
+    /**
+     * Finds the most probable split of the text into words. Anything but A-Z separates runs
+     * that are segmented independently (e.g. the messages of a multi-message decryption).
+     *
+     * @param text the candidate plaintext
+     * @return the best segmentation and its log probability
+     */
+    public Segmentation segment(String text) {
+        List<String> words = new ArrayList<>();
+        double logProb = 0.0;
+        int start = 0;
+        while (start < text.length()) {
+            while (start < text.length() && !isLetter(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < text.length() && isLetter(text.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                logProb += segmentRun(text, start, end, words);
+            }
+            start = end;
+        }
+        return new Segmentation(words, logProb);
+    }
+
+    // Viterbi over one run of letters; appends the words of the best path
+    private double segmentRun(String text, int from, int to, List<String> words) {
+        int n = to - from;
+        double[] best = new double[n + 1];
+        int[] previous = new int[n + 1];
+        Arrays.fill(best, Double.NEGATIVE_INFINITY);
+        best[0] = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            if (best[i] == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            // Unknown single letter
+            relax(best, previous, i, i + 1, best[i] + unknownLetterLogProb);
+
+            // Every known word starting at i
+            int node = 0;
+            for (int j = i; j < n && j - i < maxWordLength; j++) {
+                node = children[node * 26 + (text.charAt(from + j) - 'A')];
+                if (node == NO_CHILD) {
+                    break;
+                }
+                if (!Double.isNaN(wordLogProb[node])) {
+                    relax(best, previous, i, j + 1, best[i] + wordLogProb[node]);
+                }
+            }
+        }
+
+        // Walk the back pointers and emit the words in order
+        Deque<String> path = new ArrayDeque<>();
+        for (int end = n; end > 0; end = previous[end]) {
+            path.push(text.substring(from + previous[end], from + end));
+        }
+        words.addAll(path);
+        return best[n];
+    }
+
+    private static void relax(double[] best, int[] previous, int from, int to, double logProb) {
+        if (logProb > best[to]) {
+            best[to] = logProb;
+            previous[to] = from;
+        }
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    /**
+     * Combines the n-gram score of a candidate with its word score.
+     *
+     * @param ngramScore the n-gram score from {@link NGramScorer}
+     * @param wordScore  the log probability of the segmentation
+     * @return the combined score
+     */
+    public double combine(double ngramScore, double wordScore) {
+        return ngramScore + weight * wordScore;
+    }
+
+    // Re-rank the final results of a solver by n-gram score combined with word segmentation likelihood
+    public <R extends Candidate> List<R> rescore(List<R> results) {
+        List<R> rescored = new ArrayList<>(results);
+        for (R result : rescored) {
+            Segmentation segmentation = segment(result.text());
+            result.setRescore(segmentation, combine(result.ngramScore(), segmentation.logProb));
+        }
+        rescored.sort(Comparator.comparingDouble(r -> -r.combinedScore()));
+        return rescored;
+    }
+}